@@ -0,0 +1,79 @@
+package FDM;
+
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+// Evaluates a compiled expression over every row of a RowSource and folds the results
+// straight into an accumulator, without keeping a result per row.
+//
+// In parallel mode the rows are cut into blocks; each worker keeps its own accumulator,
+// stack and row buffer, and the partial accumulators are merged at the end.
+// Memory use depends on the number of workers, not on the number of rows.
+public final class Aggregates {
+
+    // Rows handed to a worker at a time
+    static final int BLOCK_ROWS = 4096;
+
+    private Aggregates() {
+    }
+
+    public static Summary summarize(CompiledExpression expression, RowSource rows) {
+        return reduce(expression, rows, Summary::new, true);
+    }
+
+    public static Histogram histogram(CompiledExpression expression, RowSource rows,
+                                      double low, double high, int binCount) {
+        return reduce(expression, rows, () -> new Histogram(low, high, binCount), true);
+    }
+
+    public static <A extends ResultAccumulator<A>> A reduce(CompiledExpression expression, RowSource rows,
+                                                             Supplier<A> newAccumulator, boolean parallel) {
+        if (rows.width() < expression.variableCount()) {
+            throw new IllegalArgumentException(
+                    "Rows have " + rows.width() + " values but the expression uses " + expression.variableCount());
+        }
+
+        long size = rows.size();
+        long blocks = (size + BLOCK_ROWS - 1) / BLOCK_ROWS;
+
+        LongStream blockIndexes = LongStream.range(0, blocks);
+        if (parallel) {
+            blockIndexes = blockIndexes.parallel();
+        }
+
+        Worker<A> result = blockIndexes.collect(
+                () -> new Worker<>(expression, rows, newAccumulator.get()),
+                (worker, block) -> worker.run(block * BLOCK_ROWS, Math.min(size, (block + 1) * BLOCK_ROWS)),
+                Worker::merge);
+
+        return result.accumulator;
+    }
+
+    // Per-worker state, reused for every block that worker processes
+    private static final class Worker<A extends ResultAccumulator<A>> {
+        final CompiledExpression expression;
+        final RowSource rows;
+        final A accumulator;
+        final double[] row;
+        final double[] stack;
+
+        Worker(CompiledExpression expression, RowSource rows, A accumulator) {
+            this.expression = expression;
+            this.rows = rows;
+            this.accumulator = accumulator;
+            this.row = new double[rows.width()];
+            this.stack = new double[expression.maxStackDepth()];
+        }
+
+        void run(long from, long to) {
+            for (long i = from; i < to; i++) {
+                rows.read(i, row);
+                accumulator.accept(expression.evaluate(row, stack));
+            }
+        }
+
+        void merge(Worker<A> other) {
+            accumulator.merge(other.accumulator);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package FDM;
+
+import java.util.OptionalDouble;
+
+// ICalculator decorator that answers repeated expressions from a PersistentResultCache.
+// Misses are evaluated by the delegate and stored (unless the cache is read-only).
+// Expressions that fail to evaluate are not cached.
+public class CachingCalculator implements ICalculator {
+
+    private final ICalculator delegate;
+    private final PersistentResultCache cache;
+
+    public CachingCalculator(ICalculator delegate, PersistentResultCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public double evaluate(String number) {
+        OptionalDouble cached = cache.get(number);
+        if (cached.isPresent()) {
+            return cached.getAsDouble();
+        }
+
+        double value = delegate.evaluate(number);
+        if (cache.isWritable()) {
+            cache.put(number, value);
+        }
+        return value;
+    }
+}
@@ -2,7 +2,7 @@ package FDM;
 
 public class Calculator implements ICalculator{
 
-    private String normalizeSigns(String s) {
+    static String normalizeSigns(String s) {
 
         String result = s;
 
@@ -21,12 +21,15 @@ public class Calculator implements ICalculator{
     }
 
 
+    // Removes whitespace and collapses sign pairs, e.g. " 2 - -3" -> "2+3"
+    static String normalize(String expression) {
+        return normalizeSigns(expression.replace(" ", ""));
+    }
+
+
     @Override
     public double evaluate(String number) {
-        // Removing whitespaces
-        String expr = number.replace(" ", "");
-
-        expr = normalizeSigns(expr);
+        String expr = normalize(number);
 
         // unwrap outer parentheses like "(2+3)" or "((2+3))"
         if (expr.startsWith("(") && expr.endsWith(")") && matching_outer_parentheses(expr)) {
@@ -52,7 +55,6 @@ public class Calculator implements ICalculator{
             double base = evaluate(baseStr);
 
             // FRACTION FIRST (from the STRING)
-            System.out.println("DEBUG expr=" + expr + " expStr=" + expStr);
             Fraction frac = tryParseFraction(expStr);
             double value;
 
@@ -177,7 +179,7 @@ public class Calculator implements ICalculator{
         return checkMatchingOuter(expr, index + 1, depth);
     }
 
-    private double pow(double base, double exponent) {
+    static double pow(double base, double exponent) {
 
         if (!isInteger(exponent)) {
             throw new IllegalArgumentException("Non-integer exponent not supported here: " + exponent);
@@ -193,7 +195,7 @@ public class Calculator implements ICalculator{
 
 
 
-    private double powInt(double base, int exp) {
+    static double powInt(double base, int exp) {
         if (exp == 0) {
             return 1.0;
         }
@@ -201,7 +203,7 @@ public class Calculator implements ICalculator{
         return base * powInt(base, exp - 1);
     }
 
-    private boolean isInteger(double x) {
+    static boolean isInteger(double x) {
         return x == (int) x;
     }
 
@@ -282,38 +284,18 @@ public class Calculator implements ICalculator{
         double numeratorValue = evaluate(left);
         double denominatorValue = evaluate(right);
 
-        if (!isInteger(numeratorValue) || !isInteger(denominatorValue)) {
-            return null;
-        }
-
-        int numerator = (int) numeratorValue;
-        int denominator = (int) denominatorValue;
-
-        if (denominator == 0) {
-            throw new IllegalArgumentException("Exponent denominator cannot be zero: " + s);
-        }
-
-        int g = gcd(Math.abs(numerator), Math.abs(denominator));
-        numerator /= g;
-        denominator /= g;
-
-        if (denominator < 0) {
-            numerator = -numerator;
-            denominator = -denominator;
-        }
-
-        return new Fraction(numerator, denominator);
+        return Fraction.of(numeratorValue, denominatorValue, s);
     }
 
 
-    private int gcd(int a, int b) {
+    static int gcd(int a, int b) {
         if (b == 0) {
             return a;
         }
         return gcd(b, a % b);
     }
 
-    private static class Fraction {
+    static class Fraction {
         int numerator;
         int denominator;
 
@@ -321,9 +303,35 @@ public class Calculator implements ICalculator{
             this.numerator = numerator;
             this.denominator = denominator;
         }
+
+        // Builds a reduced fraction from evaluated numerator/denominator values.
+        // Returns null if either side is not a whole number.
+        static Fraction of(double numeratorValue, double denominatorValue, String source) {
+            if (!isInteger(numeratorValue) || !isInteger(denominatorValue)) {
+                return null;
+            }
+
+            int numerator = (int) numeratorValue;
+            int denominator = (int) denominatorValue;
+
+            if (denominator == 0) {
+                throw new IllegalArgumentException("Exponent denominator cannot be zero: " + source);
+            }
+
+            int g = gcd(Math.abs(numerator), Math.abs(denominator));
+            numerator /= g;
+            denominator /= g;
+
+            if (denominator < 0) {
+                numerator = -numerator;
+                denominator = -denominator;
+            }
+
+            return new Fraction(numerator, denominator);
+        }
     }
 
-    private double powFraction(double base, Fraction exp) {
+    static double powFraction(double base, Fraction exp) {
 
         int p = exp.numerator;
         int q = exp.denominator;
@@ -344,7 +352,7 @@ public class Calculator implements ICalculator{
         return roundTo3dp(result);
     }
 
-    private double nthRoot(double value, int n) {
+    static double nthRoot(double value, int n) {
 
         if (value == 0.0) {
             return 0.0;
@@ -359,7 +367,7 @@ public class Calculator implements ICalculator{
         return nthRootIter(value, n, guess);
     }
 
-    private double nthRootIter(double value, int n, double guess) {
+    static double nthRootIter(double value, int n, double guess) {
 
         double denom = powInt(guess, n - 1);
         double next = ((n - 1) * guess + (value / denom)) / n;
@@ -371,7 +379,7 @@ public class Calculator implements ICalculator{
         return nthRootIter(value, n, next);
     }
 
-    private double roundTo3dp(double x) {
+    static double roundTo3dp(double x) {
         return Math.round(x * 10000.0) / 10000.0;
     }
 
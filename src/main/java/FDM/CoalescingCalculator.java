@@ -0,0 +1,91 @@
+package FDM;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Asynchronous front end for an ICalculator that merges identical concurrent requests.
+//
+// While an expression is being evaluated, further requests for the same normalized
+// expression (see Calculator.normalize) wait on the same computation instead of starting
+// their own. Once it finishes, the next request starts a fresh evaluation.
+//
+// Work runs on a fixed number of threads with a bounded queue. When the queue is full,
+// new (non-coalesced) requests fail straight away with RejectedExecutionException,
+// so a load spike does not pile up threads or memory.
+public class CoalescingCalculator implements AutoCloseable {
+
+    private final ICalculator delegate;
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentHashMap<String, CompletableFuture<Double>> inFlight = new ConcurrentHashMap<>();
+
+    public CoalescingCalculator(ICalculator delegate, int threads, int queueCapacity) {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException(
+                    "threads and queueCapacity must be positive: " + threads + ", " + queueCapacity);
+        }
+        this.delegate = delegate;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new DaemonThreads(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Each caller gets its own future, so cancelling one does not affect the other waiters
+    public CompletableFuture<Double> evaluateAsync(String expression) {
+        String key = Calculator.normalize(expression);
+
+        CompletableFuture<Double> created = new CompletableFuture<>();
+        CompletableFuture<Double> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing.copy();
+        }
+
+        try {
+            executor.execute(() -> {
+                // leave inFlight before completing, so a caller woken by the result
+                // that asks again starts a fresh evaluation instead of joining this one
+                double result;
+                try {
+                    result = delegate.evaluate(expression);
+                } catch (Throwable t) {
+                    inFlight.remove(key, created);
+                    created.completeExceptionally(t);
+                    return;
+                }
+                inFlight.remove(key, created);
+                created.complete(result);
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+
+        return created.copy();
+    }
+
+    // Number of distinct expressions currently queued or running
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    // Stops accepting work; already queued evaluations still complete
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static final class DaemonThreads implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "calculator-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package FDM;
+
+// ICalculator backed by ExpressionCompiler.
+// Use compile() directly when the same expression is evaluated many times.
+public class CompiledCalculator implements ICalculator {
+
+    private final ExpressionCompiler compiler = new ExpressionCompiler();
+
+    public CompiledExpression compile(String expression) {
+        return compiler.compile(expression);
+    }
+
+    @Override
+    public double evaluate(String number) {
+        return compiler.compile(number).evaluate();
+    }
+}
@@ -0,0 +1,167 @@
+package FDM;
+
+// A parsed expression stored in postfix form inside primitive arrays
+// (one opcode array, one operand array and a constant pool).
+// There is no object per node, so a compiled expression costs a few bytes per
+// instruction and evaluation is a single loop over the arrays.
+//
+// Variables are numbered in the order they were given to ExpressionCompiler.compile()
+// and are passed to evaluate() as a double[] in that order.
+// Conditionals (?:, if(), &&, ||) compile to jumps, so an untaken branch is never evaluated.
+public final class CompiledExpression {
+
+    private static final double[] NO_VARIABLES = new double[0];
+
+    private final byte[] opcodes;
+    private final int[] operands;
+    private final double[] constants;
+    private final String[] variables;
+    private final int maxStackDepth;
+
+    CompiledExpression(byte[] opcodes, int[] operands, double[] constants, String[] variables, int maxStackDepth) {
+        this.opcodes = opcodes;
+        this.operands = operands;
+        this.constants = constants;
+        this.variables = variables;
+        this.maxStackDepth = maxStackDepth;
+    }
+
+    public double evaluate() {
+        return evaluate(NO_VARIABLES, new double[maxStackDepth]);
+    }
+
+    // Evaluates using a caller supplied stack, so repeated evaluations do not allocate.
+    // The stack must hold at least maxStackDepth() values.
+    public double evaluate(double[] stack) {
+        return evaluate(NO_VARIABLES, stack);
+    }
+
+    public double evaluate(double[] variableValues, double[] stack) {
+        if (variableValues.length < variables.length) {
+            throw new IllegalArgumentException(
+                    "Expected " + variables.length + " variable values but got " + variableValues.length);
+        }
+        if (stack.length < maxStackDepth) {
+            throw new IllegalArgumentException(
+                    "Stack too small: " + stack.length + " < " + maxStackDepth);
+        }
+
+        byte[] ops = opcodes;
+        int sp = -1;
+        int pc = 0;
+
+        while (pc < ops.length) {
+            byte op = ops[pc];
+            switch (op) {
+                case Opcodes.CONST:
+                    stack[++sp] = constants[operands[pc]];
+                    break;
+                case Opcodes.LOAD:
+                    stack[++sp] = variableValues[operands[pc]];
+                    break;
+                case Opcodes.NEG:
+                    stack[sp] = -stack[sp];
+                    break;
+                case Opcodes.TRUTH:
+                    stack[sp] = stack[sp] != 0.0 ? 1.0 : 0.0;
+                    break;
+                case Opcodes.POW_FRAC:
+                    sp -= 2;
+                    stack[sp] = powFraction(stack[sp], stack[sp + 1], stack[sp + 2]);
+                    break;
+                case Opcodes.JUMP:
+                case Opcodes.JUMP_IF_FALSE:
+                case Opcodes.JUMP_IF_FALSE_KEEP:
+                case Opcodes.JUMP_IF_TRUE_KEEP: {
+                    boolean taken = Opcodes.takesJump(op, stack[sp]);
+                    sp += Opcodes.jumpStackEffect(op, taken);
+                    if (taken) {
+                        pc = operands[pc];
+                        continue;
+                    }
+                    break;
+                }
+                default:
+                    sp--;
+                    stack[sp] = Opcodes.binary(op, stack[sp], stack[sp + 1]);
+                    break;
+            }
+            pc++;
+        }
+
+        return stack[0];
+    }
+
+    // Value and partial derivatives with respect to the given variables, from one pass
+    // over the instructions (forward-mode automatic differentiation, see DualEvaluator)
+    public Gradient gradient(double[] variableValues, String... wrt) {
+        if (variableValues.length < variables.length) {
+            throw new IllegalArgumentException(
+                    "Expected " + variables.length + " variable values but got " + variableValues.length);
+        }
+
+        int[] slots = new int[wrt.length];
+        for (int i = 0; i < wrt.length; i++) {
+            slots[i] = variableSlot(wrt[i]);
+        }
+
+        return DualEvaluator.gradient(this, variableValues, slots, wrt.clone());
+    }
+
+    private int variableSlot(String name) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown variable: " + name);
+    }
+
+    static double powFraction(double base, double numerator, double denominator) {
+        Calculator.Fraction frac = Calculator.Fraction.of(numerator, denominator, numerator + "/" + denominator);
+        if (frac == null) {
+            throw new IllegalArgumentException(
+                    "Could not parse fractional exponent: " + numerator + "/" + denominator);
+        }
+        return Calculator.powFraction(base, frac);
+    }
+
+    public int instructionCount() {
+        return opcodes.length;
+    }
+
+    public int constantCount() {
+        return constants.length;
+    }
+
+    public int variableCount() {
+        return variables.length;
+    }
+
+    public String variableName(int slot) {
+        return variables[slot];
+    }
+
+    public int maxStackDepth() {
+        return maxStackDepth;
+    }
+
+    // Bytes used by the instruction and constant arrays (array headers not included)
+    public long footprintBytes() {
+        return opcodes.length * (long) Byte.BYTES
+                + operands.length * (long) Integer.BYTES
+                + constants.length * (long) Double.BYTES;
+    }
+
+    byte[] opcodes() {
+        return opcodes;
+    }
+
+    int[] operands() {
+        return operands;
+    }
+
+    double[] constants() {
+        return constants;
+    }
+}
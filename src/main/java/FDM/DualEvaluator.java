@@ -0,0 +1,176 @@
+package FDM;
+
+// Forward-mode automatic differentiation over a CompiledExpression.
+//
+// Runs the same instruction loop as CompiledExpression.evaluate(), but every stack slot
+// carries a dual number: the value plus one tangent per requested variable
+// (tangents of slot s live at tangents[s * n .. s * n + n - 1]).
+// The value and all partials come out of a single pass, with no re-parsing
+// and no finite-difference noise. Each instruction costs O(n) extra work
+// for n requested variables.
+//
+// Derivative rules follow the maths the evaluator uses:
+//  - b^e (whole e):     e * b^(e-1) * db + b^e * ln(b) * de   (second term 0 when b^e is 0)
+//  - b^(p/q):           (p/q) * b^((p-q)/q) * db + b^(p/q) * ln(b) * d(p/q)
+//    the same two terms as b^e with e = p/q; the first is written without dividing by b,
+//    so it stays finite at b = 0 when p >= q
+//  - comparisons, && || and truth values are flat: derivative 0
+//  - ?: and if() take the derivative of the branch that was chosen
+final class DualEvaluator {
+
+    private DualEvaluator() {
+    }
+
+    static Gradient gradient(CompiledExpression expression, double[] variableValues, int[] slots, String[] names) {
+        byte[] ops = expression.opcodes();
+        int[] operands = expression.operands();
+        double[] constants = expression.constants();
+
+        int n = slots.length;
+        double[] stack = new double[expression.maxStackDepth()];
+        double[] tangents = new double[expression.maxStackDepth() * n];
+
+        int sp = -1;
+        int pc = 0;
+
+        while (pc < ops.length) {
+            byte op = ops[pc];
+            switch (op) {
+                case Opcodes.CONST: {
+                    stack[++sp] = constants[operands[pc]];
+                    zero(tangents, sp, n);
+                    break;
+                }
+                case Opcodes.LOAD: {
+                    int slot = operands[pc];
+                    stack[++sp] = variableValues[slot];
+                    for (int j = 0; j < n; j++) {
+                        tangents[sp * n + j] = slots[j] == slot ? 1.0 : 0.0;
+                    }
+                    break;
+                }
+                case Opcodes.NEG: {
+                    stack[sp] = -stack[sp];
+                    for (int j = 0; j < n; j++) {
+                        tangents[sp * n + j] = -tangents[sp * n + j];
+                    }
+                    break;
+                }
+                case Opcodes.TRUTH: {
+                    stack[sp] = stack[sp] != 0.0 ? 1.0 : 0.0;
+                    zero(tangents, sp, n);
+                    break;
+                }
+                case Opcodes.ADD:
+                case Opcodes.SUB: {
+                    sp--;
+                    double sign = op == Opcodes.ADD ? 1.0 : -1.0;
+                    stack[sp] = stack[sp] + sign * stack[sp + 1];
+                    for (int j = 0; j < n; j++) {
+                        tangents[sp * n + j] += sign * tangents[(sp + 1) * n + j];
+                    }
+                    break;
+                }
+                case Opcodes.MUL: {
+                    sp--;
+                    double left = stack[sp];
+                    double right = stack[sp + 1];
+                    stack[sp] = left * right;
+                    for (int j = 0; j < n; j++) {
+                        tangents[sp * n + j] = tangents[sp * n + j] * right + left * tangents[(sp + 1) * n + j];
+                    }
+                    break;
+                }
+                case Opcodes.DIV: {
+                    sp--;
+                    double right = stack[sp + 1];
+                    double value = stack[sp] / right;
+                    stack[sp] = value;
+                    for (int j = 0; j < n; j++) {
+                        tangents[sp * n + j] = (tangents[sp * n + j] - value * tangents[(sp + 1) * n + j]) / right;
+                    }
+                    break;
+                }
+                case Opcodes.POW: {
+                    sp--;
+                    double base = stack[sp];
+                    double exponent = stack[sp + 1];
+                    double value = Calculator.pow(base, exponent);
+                    stack[sp] = value;
+
+                    double baseFactor = exponent == 0.0 ? 0.0 : exponent * Calculator.pow(base, exponent - 1);
+                    for (int j = 0; j < n; j++) {
+                        double exponentTangent = tangents[(sp + 1) * n + j];
+                        double tangent = baseFactor * tangents[sp * n + j];
+                        // 0^e is 0 for every e > 0, so the exponent term is 0 (not 0 * ln 0 = NaN)
+                        if (exponentTangent != 0.0 && value != 0.0) {
+                            tangent += value * Math.log(base) * exponentTangent;
+                        }
+                        tangents[sp * n + j] = tangent;
+                    }
+                    break;
+                }
+                case Opcodes.POW_FRAC: {
+                    sp -= 2;
+                    double base = stack[sp];
+                    double numerator = stack[sp + 1];
+                    double denominator = stack[sp + 2];
+                    stack[sp] = CompiledExpression.powFraction(base, numerator, denominator);
+
+                    // computed from the unrounded root (powFraction rounds its result)
+                    Calculator.Fraction frac = Calculator.Fraction.of(numerator, denominator, numerator + "/" + denominator);
+                    double root = Calculator.nthRoot(base, frac.denominator);
+                    double baseFactor = (double) frac.numerator / frac.denominator
+                            * Calculator.pow(root, frac.numerator - frac.denominator);
+                    double rootPower = Calculator.pow(root, frac.numerator);
+                    // as for POW: a zero power has no exponent term
+                    double exponentFactor = rootPower == 0.0 ? 0.0 : rootPower * Math.log(base);
+
+                    for (int j = 0; j < n; j++) {
+                        double numeratorTangent = tangents[(sp + 1) * n + j];
+                        double denominatorTangent = tangents[(sp + 2) * n + j];
+                        double tangent = baseFactor * tangents[sp * n + j];
+                        if (numeratorTangent != 0.0 || denominatorTangent != 0.0) {
+                            // d(p/q) = (dp * q - p * dq) / q^2
+                            tangent += exponentFactor
+                                    * (numeratorTangent * denominator - numerator * denominatorTangent)
+                                    / (denominator * denominator);
+                        }
+                        tangents[sp * n + j] = tangent;
+                    }
+                    break;
+                }
+                case Opcodes.JUMP:
+                case Opcodes.JUMP_IF_FALSE:
+                case Opcodes.JUMP_IF_FALSE_KEEP:
+                case Opcodes.JUMP_IF_TRUE_KEEP: {
+                    boolean taken = Opcodes.takesJump(op, stack[sp]);
+                    sp += Opcodes.jumpStackEffect(op, taken);
+                    if (taken) {
+                        pc = operands[pc];
+                        continue;
+                    }
+                    break;
+                }
+                default: {
+                    // comparisons
+                    sp--;
+                    stack[sp] = Opcodes.binary(op, stack[sp], stack[sp + 1]);
+                    zero(tangents, sp, n);
+                    break;
+                }
+            }
+            pc++;
+        }
+
+        double[] partials = new double[n];
+        System.arraycopy(tangents, 0, partials, 0, n);
+        return new Gradient(stack[0], names, partials);
+    }
+
+    private static void zero(double[] tangents, int sp, int n) {
+        for (int j = 0; j < n; j++) {
+            tangents[sp * n + j] = 0.0;
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package FDM;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Parses an expression once and turns it into a CompiledExpression.
+// Accepts the same grammar as Calculator and gives the same answers, except where noted below:
+//  - whitespace is ignored
+//  - numbers may use scientific notation, e.g. 1e3 or 2.5E-4
+//  - ^ binds tightest and is right associative
+//  - a sign in front of a number at the start of an operand group belongs to that number,
+//    so "-2^2" is 4 (same as Calculator). A group starts at the beginning of the expression,
+//    after '(' and after any operator below + and -: ? : , && || and the comparisons.
+//    So "1>0?-2^2:0" is 4 like "(-2^2)", while "3*-2^2" and "2^-2^2" still negate the power.
+//  - a parenthesised division exponent like 9^(1/2) is a fractional power
+//
+// Deliberate difference: an exponent group is evaluated with the usual precedence, and it is
+// a fractional power only when its outermost operation is a division of whole numbers.
+// Calculator instead strips one pair of parentheses and splits at the first '/', so:
+//    2^(8/4/2)    here 2^((8/4)/2) = 2         Calculator 2^(8/(4/2)) = 16
+//    4^(1/2*2)    here 4^1 = 4                 Calculator 4^(1/(2*2)) = 1.4142
+//    2^(1/2+0)    here an error (2^0.5 is a    Calculator 2^(1/2) = 1.4142
+//                 non-integer power)
+//
+// On top of that it understands, from lowest to highest precedence:
+//  - c ? a : b  and  if(c, a, b)
+//  - ||, &&
+//  - == !=
+//  - < <= > >=
+// Comparisons and logical operators give 1 or 0; any non-zero value counts as true.
+// Only the branch that is chosen is evaluated, and && / || stop at the first operand
+// that decides the result.
+//
+// Names other than "if" are variables; they must be listed when compiling.
+public final class ExpressionCompiler {
+
+    private static final String[] NO_VARIABLES = new String[0];
+
+    // last character of every token after which a new operand group starts (see above)
+    private static final String GROUP_OPENERS = "(?:,&|<>=";
+
+    public CompiledExpression compile(String expression) {
+        return compile(expression, NO_VARIABLES);
+    }
+
+    // variables gives the slot of each name: variables[i] is read from index i at evaluation time
+    public CompiledExpression compile(String expression, String... variables) {
+        return new Parser(expression.replace(" ", ""), variables.clone()).parse();
+    }
+
+    private static final class Parser {
+
+        private final String expr;
+        private final String[] variables;
+        private int pos;
+
+        private byte[] opcodes = new byte[16];
+        private int[] operands = new int[16];
+        private int size;
+
+        // a jump lands here, so instructions before this index must not be folded or rewritten
+        private int barrier;
+
+        private double[] constants = new double[8];
+        private int constantCount;
+        private final Map<Long, Integer> constantIndex = new HashMap<>();
+
+        private int depth;
+        private int maxDepth;
+
+        Parser(String expr, String[] variables) {
+            this.expr = expr;
+            this.variables = variables;
+        }
+
+        CompiledExpression parse() {
+            if (expr.isEmpty()) {
+                throw new IllegalArgumentException("Empty expression");
+            }
+
+            parseConditional();
+
+            if (pos != expr.length()) {
+                if (expr.charAt(pos) == ')') {
+                    throw new IllegalArgumentException("Mismatched parentheses: " + expr);
+                }
+                throw new IllegalArgumentException(
+                        "Unexpected '" + expr.charAt(pos) + "' at position " + pos + ": " + expr);
+            }
+
+            return new CompiledExpression(
+                    Arrays.copyOf(opcodes, size),
+                    Arrays.copyOf(operands, size),
+                    Arrays.copyOf(constants, constantCount),
+                    variables,
+                    maxDepth);
+        }
+
+        // conditional := or ('?' conditional ':' conditional)?
+        private void parseConditional() {
+            parseOr();
+            if (peek() != '?') {
+                return;
+            }
+            pos++;
+
+            int toElse = emit(Opcodes.JUMP_IF_FALSE);
+            int branchDepth = depth;
+
+            parseConditional();
+            expect(':');
+            int toEnd = emit(Opcodes.JUMP);
+
+            depth = branchDepth;
+            placeLabel(toElse);
+            parseConditional();
+            placeLabel(toEnd);
+        }
+
+        // if(c, a, b) -- same as c ? a : b
+        private void parseIf() {
+            expect('(');
+            parseConditional();
+            expect(',');
+
+            int toElse = emit(Opcodes.JUMP_IF_FALSE);
+            int branchDepth = depth;
+
+            parseConditional();
+            expect(',');
+            int toEnd = emit(Opcodes.JUMP);
+
+            depth = branchDepth;
+            placeLabel(toElse);
+            parseConditional();
+            expect(')');
+            placeLabel(toEnd);
+        }
+
+        // or := and ('||' and)*
+        private void parseOr() {
+            parseAnd();
+            while (lookingAt("||")) {
+                pos += 2;
+                int toEnd = emit(Opcodes.JUMP_IF_TRUE_KEEP);
+                parseAnd();
+                placeLabel(toEnd);
+                emit(Opcodes.TRUTH);
+            }
+        }
+
+        // and := equality ('&&' equality)*
+        private void parseAnd() {
+            parseEquality();
+            while (lookingAt("&&")) {
+                pos += 2;
+                int toEnd = emit(Opcodes.JUMP_IF_FALSE_KEEP);
+                parseEquality();
+                placeLabel(toEnd);
+                emit(Opcodes.TRUTH);
+            }
+        }
+
+        // equality := relational (('==' | '!=') relational)*
+        private void parseEquality() {
+            parseRelational();
+            while (true) {
+                if (lookingAt("==")) {
+                    pos += 2;
+                    parseRelational();
+                    emit(Opcodes.EQ);
+                } else if (lookingAt("!=")) {
+                    pos += 2;
+                    parseRelational();
+                    emit(Opcodes.NE);
+                } else {
+                    return;
+                }
+            }
+        }
+
+        // relational := expression (('<' | '<=' | '>' | '>=') expression)*
+        private void parseRelational() {
+            parseExpression();
+            while (true) {
+                if (lookingAt("<=")) {
+                    pos += 2;
+                    parseExpression();
+                    emit(Opcodes.LE);
+                } else if (lookingAt(">=")) {
+                    pos += 2;
+                    parseExpression();
+                    emit(Opcodes.GE);
+                } else if (peek() == '<') {
+                    pos++;
+                    parseExpression();
+                    emit(Opcodes.LT);
+                } else if (peek() == '>') {
+                    pos++;
+                    parseExpression();
+                    emit(Opcodes.GT);
+                } else {
+                    return;
+                }
+            }
+        }
+
+        // expression := term (('+' | '-') term)*
+        private void parseExpression() {
+            parseTerm();
+            while (pos < expr.length()) {
+                char c = expr.charAt(pos);
+                if (c == '+') {
+                    pos++;
+                    parseTerm();
+                    emit(Opcodes.ADD);
+                } else if (c == '-') {
+                    pos++;
+                    parseTerm();
+                    emit(Opcodes.SUB);
+                } else {
+                    return;
+                }
+            }
+        }
+
+        // term := unary (('*' | '/') unary)*
+        private void parseTerm() {
+            parseUnary();
+            while (pos < expr.length()) {
+                char c = expr.charAt(pos);
+                if (c == '*') {
+                    pos++;
+                    parseUnary();
+                    emit(Opcodes.MUL);
+                } else if (c == '/') {
+                    pos++;
+                    parseUnary();
+                    emit(Opcodes.DIV);
+                } else {
+                    return;
+                }
+            }
+        }
+
+        // unary := ('+' | '-')* power
+        private void parseUnary() {
+            int start = pos;
+            boolean negative = false;
+
+            while (pos < expr.length() && (expr.charAt(pos) == '+' || expr.charAt(pos) == '-')) {
+                if (expr.charAt(pos) == '-') {
+                    negative = !negative;
+                }
+                pos++;
+            }
+
+            if (pos > start && isGroupStart(start) && isNumberChar(peek())) {
+                // signed literal is the base itself, e.g. "-2^2" or "(-2^2)"
+                double value = parseNumber();
+                pushConstant(negative ? -value : value);
+                parsePowerTail();
+                return;
+            }
+
+            parsePrimary();
+            parsePowerTail();
+
+            if (negative) {
+                emitNegate();
+            }
+        }
+
+        // power tail := ('^' unary)?   (right associative through parseUnary)
+        private void parsePowerTail() {
+            if (peek() != '^') {
+                return;
+            }
+            pos++;
+
+            if (pos >= expr.length()) {
+                throw new IllegalArgumentException("Missing exponent: " + expr);
+            }
+
+            parseUnary();
+
+            if (size > barrier && opcodes[size - 1] == Opcodes.DIV) {
+                // the exponent's outermost operation is p/q (see the header for how this differs
+                // from Calculator): keep p and q on the stack for a fractional power
+                size--;
+                depth++;
+                emit(Opcodes.POW_FRAC);
+            } else {
+                emit(Opcodes.POW);
+            }
+        }
+
+        // primary := number | name | if(...) | '(' conditional ')'
+        private void parsePrimary() {
+            char c = peek();
+
+            if (c == '(') {
+                int open = pos;
+                pos++;
+                if (peek() == ')') {
+                    throw new IllegalArgumentException("Empty parentheses: " + expr);
+                }
+                parseConditional();
+                if (peek() != ')') {
+                    throw new IllegalArgumentException("Mismatched parentheses: " + expr + " (opened at " + open + ")");
+                }
+                pos++;
+                return;
+            }
+
+            if (isNumberChar(c)) {
+                pushConstant(parseNumber());
+                return;
+            }
+
+            if (isNameStart(c)) {
+                String name = parseName();
+                if (name.equals("if") && peek() == '(') {
+                    parseIf();
+                } else {
+                    emit(Opcodes.LOAD, variableSlot(name));
+                }
+                return;
+            }
+
+            if (pos >= expr.length()) {
+                throw new IllegalArgumentException("Unexpected end of expression: " + expr);
+            }
+            throw new IllegalArgumentException("Unexpected '" + c + "' at position " + pos + ": " + expr);
+        }
+
+        private double parseNumber() {
+            int start = pos;
+            while (pos < expr.length() && isNumberChar(expr.charAt(pos))) {
+                pos++;
+            }
+            if (isExponentMarker(pos)) {
+                pos += Character.isDigit(expr.charAt(pos + 1)) ? 1 : 2;
+                while (pos < expr.length() && Character.isDigit(expr.charAt(pos))) {
+                    pos++;
+                }
+            }
+            try {
+                return Double.parseDouble(expr.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number '" + expr.substring(start, pos) + "': " + expr);
+            }
+        }
+
+        private String parseName() {
+            int start = pos;
+            while (pos < expr.length() && (isNameStart(expr.charAt(pos)) || Character.isDigit(expr.charAt(pos)))) {
+                pos++;
+            }
+            return expr.substring(start, pos);
+        }
+
+        private int variableSlot(String name) {
+            for (int i = 0; i < variables.length; i++) {
+                if (variables[i].equals(name)) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("Unknown variable '" + name + "': " + expr);
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw new IllegalArgumentException("Expected '" + c + "' at position " + pos + ": " + expr);
+            }
+            pos++;
+        }
+
+        private boolean lookingAt(String token) {
+            return expr.startsWith(token, pos);
+        }
+
+        private boolean isGroupStart(int index) {
+            return index == 0 || GROUP_OPENERS.indexOf(expr.charAt(index - 1)) >= 0;
+        }
+
+        // 'e' or 'E' followed by digits, optionally signed: the exponent of a scientific literal
+        private boolean isExponentMarker(int index) {
+            if (index + 1 >= expr.length() || (expr.charAt(index) != 'e' && expr.charAt(index) != 'E')) {
+                return false;
+            }
+            char next = expr.charAt(index + 1);
+            if (next == '+' || next == '-') {
+                return index + 2 < expr.length() && Character.isDigit(expr.charAt(index + 2));
+            }
+            return Character.isDigit(next);
+        }
+
+        private boolean isNumberChar(char c) {
+            return (c >= '0' && c <= '9') || c == '.';
+        }
+
+        private boolean isNameStart(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+        }
+
+        private char peek() {
+            return pos < expr.length() ? expr.charAt(pos) : '\0';
+        }
+
+        private void emitNegate() {
+            if (size > barrier && opcodes[size - 1] == Opcodes.CONST) {
+                // fold "-constant" into the constant pool
+                double value = constants[operands[size - 1]];
+                size--;
+                depth--;
+                pushConstant(-value);
+                return;
+            }
+            emit(Opcodes.NEG);
+        }
+
+        // Points the jump at `jump` to the next instruction
+        private void placeLabel(int jump) {
+            operands[jump] = size;
+            barrier = size;
+        }
+
+        private void pushConstant(double value) {
+            Integer index = constantIndex.get(Double.doubleToRawLongBits(value));
+            if (index == null) {
+                if (constantCount == constants.length) {
+                    constants = Arrays.copyOf(constants, constantCount * 2);
+                }
+                index = constantCount;
+                constants[constantCount++] = value;
+                constantIndex.put(Double.doubleToRawLongBits(value), index);
+            }
+            emit(Opcodes.CONST, index);
+        }
+
+        private int emit(byte opcode) {
+            return emit(opcode, 0);
+        }
+
+        private int emit(byte opcode, int operand) {
+            if (size == opcodes.length) {
+                opcodes = Arrays.copyOf(opcodes, size * 2);
+                operands = Arrays.copyOf(operands, size * 2);
+            }
+            opcodes[size] = opcode;
+            operands[size] = operand;
+
+            depth += Opcodes.stackEffect(opcode);
+            maxDepth = Math.max(maxDepth, depth);
+            return size++;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package FDM;
+
+// Result of CompiledExpression.gradient(): the value of the expression and its
+// partial derivatives, in the order the variables were requested.
+public final class Gradient {
+
+    private final double value;
+    private final String[] variables;
+    private final double[] partials;
+
+    Gradient(double value, String[] variables, double[] partials) {
+        this.value = value;
+        this.variables = variables;
+        this.partials = partials;
+    }
+
+    public double value() {
+        return value;
+    }
+
+    public int size() {
+        return partials.length;
+    }
+
+    // d(expression)/d(variable) for the index-th requested variable
+    public double partial(int index) {
+        return partials[index];
+    }
+
+    public double partial(String variable) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i].equals(variable)) {
+                return partials[i];
+            }
+        }
+        throw new IllegalArgumentException("No partial derivative for '" + variable + "'");
+    }
+
+    public double[] partials() {
+        return partials.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("value=").append(value);
+        for (int i = 0; i < variables.length; i++) {
+            text.append(", d/d").append(variables[i]).append('=').append(partials[i]);
+        }
+        return text.toString();
+    }
+}
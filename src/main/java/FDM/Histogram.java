@@ -0,0 +1,84 @@
+package FDM;
+
+// Fixed-width histogram over [low, high).
+// Values below low, at or above high, and NaN are counted separately.
+public final class Histogram implements ResultAccumulator<Histogram> {
+
+    private final double low;
+    private final double high;
+    private final long[] bins;
+    private long below;
+    private long above;
+    private long nan;
+
+    public Histogram(double low, double high, int binCount) {
+        if (!(low < high) || binCount < 1) {
+            throw new IllegalArgumentException(
+                    "Need low < high and at least one bin: [" + low + ", " + high + "), " + binCount);
+        }
+        this.low = low;
+        this.high = high;
+        this.bins = new long[binCount];
+    }
+
+    @Override
+    public void accept(double value) {
+        if (Double.isNaN(value)) {
+            nan++;
+        } else if (value < low) {
+            below++;
+        } else if (value >= high) {
+            above++;
+        } else {
+            int bin = (int) ((value - low) / (high - low) * bins.length);
+            // guard against rounding up to bins.length just below high
+            bins[Math.min(bin, bins.length - 1)]++;
+        }
+    }
+
+    @Override
+    public void merge(Histogram other) {
+        if (other.low != low || other.high != high || other.bins.length != bins.length) {
+            throw new IllegalArgumentException("Cannot merge histograms with different bins");
+        }
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] += other.bins[i];
+        }
+        below += other.below;
+        above += other.above;
+        nan += other.nan;
+    }
+
+    public int binCount() {
+        return bins.length;
+    }
+
+    public long count(int bin) {
+        return bins[bin];
+    }
+
+    // Inclusive lower edge of a bin
+    public double lowerEdge(int bin) {
+        return low + (high - low) * bin / bins.length;
+    }
+
+    public long below() {
+        return below;
+    }
+
+    public long above() {
+        return above;
+    }
+
+    public long nan() {
+        return nan;
+    }
+
+    public long total() {
+        long total = below + above + nan;
+        for (long bin : bins) {
+            total += bin;
+        }
+        return total;
+    }
+}
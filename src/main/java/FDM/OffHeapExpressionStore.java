@@ -0,0 +1,229 @@
+package FDM;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// Keeps compiled expressions outside the Java heap, addressed by an int id.
+//
+// Expressions are copied into large direct ByteBuffers ("chunks"), one after another:
+//   int instructionCount, int constantCount, int maxStackDepth, int variableCount,
+//   double[constantCount] constants, int[instructionCount] operands, byte[instructionCount] opcodes
+// The id -> (chunk, offset) index lives in direct buffers too, so the heap only holds
+// one ByteBuffer object per chunk, however many expressions are stored.
+// evaluate() interprets the instructions straight from the chunk memory.
+//
+// add() is synchronized; evaluate() may be called from any number of threads.
+// The chunk tables are copy-on-write arrays behind volatile fields, replaced before size is
+// bumped, so a reader that has seen an id in size also sees the chunks that id points into.
+public final class OffHeapExpressionStore {
+
+    public static final int DEFAULT_CHUNK_BYTES = 1 << 20;
+
+    private static final double[] NO_VARIABLES = new double[0];
+
+    private static final int HEADER_BYTES = 16;
+    private static final int INSTRUCTION_COUNT_OFFSET = 0;
+    private static final int CONSTANT_COUNT_OFFSET = 4;
+    private static final int MAX_STACK_OFFSET = 8;
+    private static final int VARIABLE_COUNT_OFFSET = 12;
+
+    // 2^17 index entries of 8 bytes = 1 MiB per index chunk
+    private static final int INDEX_SHIFT = 17;
+    private static final int INDEX_MASK = (1 << INDEX_SHIFT) - 1;
+
+    private final int chunkBytes;
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private volatile ByteBuffer[] indexChunks = new ByteBuffer[0];
+
+    private ByteBuffer current;
+    private int currentOffset;
+    private long allocatedBytes;
+
+    // number of stored expressions; written after the entry is complete
+    private volatile int size;
+
+    public OffHeapExpressionStore() {
+        this(DEFAULT_CHUNK_BYTES);
+    }
+
+    public OffHeapExpressionStore(int chunkBytes) {
+        if (chunkBytes < HEADER_BYTES) {
+            throw new IllegalArgumentException("Chunk size too small: " + chunkBytes);
+        }
+        this.chunkBytes = chunkBytes;
+    }
+
+    // Copies the expression off-heap and returns its id (ids count up from 0)
+    public synchronized int add(CompiledExpression expression) {
+        byte[] opcodes = expression.opcodes();
+        int[] operands = expression.operands();
+        double[] constants = expression.constants();
+
+        int bytes = align8(HEADER_BYTES
+                + constants.length * Double.BYTES
+                + operands.length * Integer.BYTES
+                + opcodes.length);
+
+        if (current == null || currentOffset + bytes > current.capacity()) {
+            // oversized expressions get a chunk of their own
+            current = allocate(Math.max(chunkBytes, bytes));
+            chunks = append(chunks, current);
+            currentOffset = 0;
+        }
+
+        ByteBuffer chunk = current;
+        int base = currentOffset;
+
+        chunk.putInt(base + INSTRUCTION_COUNT_OFFSET, opcodes.length);
+        chunk.putInt(base + CONSTANT_COUNT_OFFSET, constants.length);
+        chunk.putInt(base + MAX_STACK_OFFSET, expression.maxStackDepth());
+        chunk.putInt(base + VARIABLE_COUNT_OFFSET, expression.variableCount());
+
+        int at = base + HEADER_BYTES;
+        for (double constant : constants) {
+            chunk.putDouble(at, constant);
+            at += Double.BYTES;
+        }
+        for (int operand : operands) {
+            chunk.putInt(at, operand);
+            at += Integer.BYTES;
+        }
+        for (byte opcode : opcodes) {
+            chunk.put(at, opcode);
+            at++;
+        }
+        currentOffset += bytes;
+
+        int id = size;
+        if (id == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Expression store is full");
+        }
+        if ((id & INDEX_MASK) == 0) {
+            indexChunks = append(indexChunks, allocate((1 << INDEX_SHIFT) * Long.BYTES));
+        }
+        indexChunks[id >>> INDEX_SHIFT]
+                .putLong((id & INDEX_MASK) * Long.BYTES, ((long) (chunks.length - 1) << 32) | base);
+
+        size = id + 1;
+        return id;
+    }
+
+    public double evaluate(int id) {
+        return evaluate(id, NO_VARIABLES, new double[maxStackDepth(id)]);
+    }
+
+    // Evaluates using a caller supplied stack; it must hold at least maxStackDepth(id) values
+    public double evaluate(int id, double[] stack) {
+        return evaluate(id, NO_VARIABLES, stack);
+    }
+
+    public double evaluate(int id, double[] variableValues, double[] stack) {
+        long location = locate(id);
+        ByteBuffer chunk = chunks[(int) (location >>> 32)];
+        int base = (int) location;
+
+        int instructionCount = chunk.getInt(base + INSTRUCTION_COUNT_OFFSET);
+        int constantCount = chunk.getInt(base + CONSTANT_COUNT_OFFSET);
+        int maxStackDepth = chunk.getInt(base + MAX_STACK_OFFSET);
+        int variableCount = chunk.getInt(base + VARIABLE_COUNT_OFFSET);
+
+        if (variableValues.length < variableCount) {
+            throw new IllegalArgumentException(
+                    "Expected " + variableCount + " variable values but got " + variableValues.length);
+        }
+        if (stack.length < maxStackDepth) {
+            throw new IllegalArgumentException(
+                    "Stack too small: " + stack.length + " < " + maxStackDepth);
+        }
+
+        int constantsAt = base + HEADER_BYTES;
+        int operandsAt = constantsAt + constantCount * Double.BYTES;
+        int opcodesAt = operandsAt + instructionCount * Integer.BYTES;
+
+        int sp = -1;
+        int pc = 0;
+
+        while (pc < instructionCount) {
+            byte op = chunk.get(opcodesAt + pc);
+            switch (op) {
+                case Opcodes.CONST:
+                    stack[++sp] = chunk.getDouble(constantsAt + operand(chunk, operandsAt, pc) * Double.BYTES);
+                    break;
+                case Opcodes.LOAD:
+                    stack[++sp] = variableValues[operand(chunk, operandsAt, pc)];
+                    break;
+                case Opcodes.NEG:
+                    stack[sp] = -stack[sp];
+                    break;
+                case Opcodes.TRUTH:
+                    stack[sp] = stack[sp] != 0.0 ? 1.0 : 0.0;
+                    break;
+                case Opcodes.POW_FRAC:
+                    sp -= 2;
+                    stack[sp] = CompiledExpression.powFraction(stack[sp], stack[sp + 1], stack[sp + 2]);
+                    break;
+                case Opcodes.JUMP:
+                case Opcodes.JUMP_IF_FALSE:
+                case Opcodes.JUMP_IF_FALSE_KEEP:
+                case Opcodes.JUMP_IF_TRUE_KEEP: {
+                    boolean taken = Opcodes.takesJump(op, stack[sp]);
+                    sp += Opcodes.jumpStackEffect(op, taken);
+                    if (taken) {
+                        pc = operand(chunk, operandsAt, pc);
+                        continue;
+                    }
+                    break;
+                }
+                default:
+                    sp--;
+                    stack[sp] = Opcodes.binary(op, stack[sp], stack[sp + 1]);
+                    break;
+            }
+            pc++;
+        }
+
+        return stack[0];
+    }
+
+    private static int operand(ByteBuffer chunk, int operandsAt, int pc) {
+        return chunk.getInt(operandsAt + pc * Integer.BYTES);
+    }
+
+    public int maxStackDepth(int id) {
+        long location = locate(id);
+        return chunks[(int) (location >>> 32)].getInt((int) location + MAX_STACK_OFFSET);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Direct memory reserved for expressions and the index
+    public synchronized long offHeapBytes() {
+        return allocatedBytes;
+    }
+
+    // Reads size before the tables, see the class comment
+    private long locate(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No expression with id " + id);
+        }
+        return indexChunks[id >>> INDEX_SHIFT].getLong((id & INDEX_MASK) * Long.BYTES);
+    }
+
+    private static ByteBuffer[] append(ByteBuffer[] table, ByteBuffer chunk) {
+        ByteBuffer[] grown = Arrays.copyOf(table, table.length + 1);
+        grown[table.length] = chunk;
+        return grown;
+    }
+
+    private ByteBuffer allocate(int bytes) {
+        allocatedBytes += bytes;
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private static int align8(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+}
@@ -0,0 +1,124 @@
+package FDM;
+
+// Instruction set of a CompiledExpression.
+// Each instruction is one opcode byte plus one int operand
+// (constant index for CONST, variable slot for LOAD, target for jumps).
+final class Opcodes {
+
+    // push constants[operand]
+    static final byte CONST = 0;
+
+    // unary minus on the top of the stack
+    static final byte NEG = 1;
+
+    // binary operators: pop right, pop left, push result
+    static final byte ADD = 2;
+    static final byte SUB = 3;
+    static final byte MUL = 4;
+    static final byte DIV = 5;
+
+    // base^exponent with a whole-number exponent
+    static final byte POW = 6;
+
+    // base^(numerator/denominator), pops three values
+    static final byte POW_FRAC = 7;
+
+    // push variables[operand]
+    static final byte LOAD = 8;
+
+    // comparisons: pop right, pop left, push 1.0 if true else 0.0
+    static final byte LT = 9;
+    static final byte LE = 10;
+    static final byte GT = 11;
+    static final byte GE = 12;
+    static final byte EQ = 13;
+    static final byte NE = 14;
+
+    // replace the top of the stack with 1.0 if it is non-zero, else 0.0
+    static final byte TRUTH = 15;
+
+    // jumps: operand is the target instruction index
+    static final byte JUMP = 16;
+    // pop; jump if the value was zero
+    static final byte JUMP_IF_FALSE = 17;
+    // jump if the top is zero (leaving it on the stack), otherwise pop it (used by &&)
+    static final byte JUMP_IF_FALSE_KEEP = 18;
+    // jump if the top is non-zero (leaving it on the stack), otherwise pop it (used by ||)
+    static final byte JUMP_IF_TRUE_KEEP = 19;
+
+    private Opcodes() {
+    }
+
+    // How many stack slots an instruction adds (negative if it removes them).
+    // For the conditional jumps this is the effect when the jump is not taken.
+    static int stackEffect(byte opcode) {
+        switch (opcode) {
+            case CONST:
+            case LOAD:
+                return 1;
+            case NEG:
+            case TRUTH:
+            case JUMP:
+                return 0;
+            case POW_FRAC:
+                return -2;
+            default:
+                return -1;
+        }
+    }
+
+    // Whether a jump instruction jumps, given the value on top of the stack (ignored by JUMP).
+    // Together with jumpStackEffect this is the whole control-flow step; every interpreter loop
+    // uses the pair so the jump rules live in one place.
+    static boolean takesJump(byte opcode, double top) {
+        switch (opcode) {
+            case JUMP:
+                return true;
+            case JUMP_IF_FALSE:
+            case JUMP_IF_FALSE_KEEP:
+                return top == 0.0;
+            case JUMP_IF_TRUE_KEEP:
+                return top != 0.0;
+            default:
+                throw new IllegalStateException("Not a jump: " + opcode);
+        }
+    }
+
+    // Stack slots a jump instruction removes: the KEEP jumps leave the value when they jump
+    static int jumpStackEffect(byte opcode, boolean taken) {
+        if (taken && (opcode == JUMP_IF_FALSE_KEEP || opcode == JUMP_IF_TRUE_KEEP)) {
+            return 0;
+        }
+        return stackEffect(opcode);
+    }
+
+    // Applies a two-operand instruction (arithmetic, POW or a comparison)
+    static double binary(byte opcode, double left, double right) {
+        switch (opcode) {
+            case ADD:
+                return left + right;
+            case SUB:
+                return left - right;
+            case MUL:
+                return left * right;
+            case DIV:
+                return left / right;
+            case POW:
+                return Calculator.pow(left, right);
+            case LT:
+                return left < right ? 1.0 : 0.0;
+            case LE:
+                return left <= right ? 1.0 : 0.0;
+            case GT:
+                return left > right ? 1.0 : 0.0;
+            case GE:
+                return left >= right ? 1.0 : 0.0;
+            case EQ:
+                return left == right ? 1.0 : 0.0;
+            case NE:
+                return left != right ? 1.0 : 0.0;
+            default:
+                throw new IllegalStateException("Unknown opcode: " + opcode);
+        }
+    }
+}
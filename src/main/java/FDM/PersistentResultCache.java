@@ -0,0 +1,337 @@
+package FDM;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.OptionalDouble;
+
+// Expression -> result cache kept in a memory-mapped file, so results survive restarts.
+//
+// The file is an open-addressing hash table of fixed-size records:
+//   header (64 bytes): magic, version, capacity, record size, clock hand
+//   record (32 bytes): key hash (8), check hash (8), value bits (8), sequence (4), referenced (4)
+// Keys are two independent 64-bit hashes of the normalized expression; the text itself is not stored.
+//
+// One process opens the file for writing (guarded by a file lock), any number of processes
+// may open it read-only. Each record is guarded by a sequence counter (odd while being
+// written), so readers never see a half-written record.
+// Records are never removed, only replaced: when all slots a key may use are taken,
+// the clock algorithm picks a record that has not been read since the last sweep.
+public final class PersistentResultCache implements AutoCloseable {
+
+    private static final int MAGIC = 0x46444D43; // "FDMC"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 64;
+    private static final int RECORD_BYTES = 32;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int RECORD_BYTES_OFFSET = 12;
+    private static final int CLOCK_OFFSET = 16;
+
+    private static final int KEY_OFFSET = 0;
+    private static final int CHECK_OFFSET = 8;
+    private static final int VALUE_OFFSET = 16;
+    private static final int SEQUENCE_OFFSET = 24;
+    private static final int REFERENCED_OFFSET = 28;
+
+    // How many consecutive slots a key may live in
+    static final int PROBE_LIMIT = 8;
+
+    private static final int READ_ATTEMPTS = 4;
+
+    private static final VarHandle INT =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final boolean writable;
+
+    private PersistentResultCache(FileChannel channel, FileLock lock, MappedByteBuffer buffer,
+                                  int capacity, boolean writable) {
+        this.channel = channel;
+        this.lock = lock;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.writable = writable;
+    }
+
+    // Opens (or creates) the cache file for reading and writing.
+    // capacity is only used when the file is new; it is rounded up to a power of two.
+    public static PersistentResultCache open(Path file, int capacity) {
+        if (capacity < PROBE_LIMIT) {
+            throw new IllegalArgumentException("Capacity must be at least " + PROBE_LIMIT + ": " + capacity);
+        }
+
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+            FileLock lock = tryLock(channel, file);
+
+            MappedByteBuffer buffer;
+            int slots;
+            if (channel.size() == 0) {
+                slots = Integer.highestOneBit(capacity - 1) << 1;
+                buffer = map(channel, FileChannel.MapMode.READ_WRITE, slots);
+                buffer.putInt(VERSION_OFFSET, VERSION);
+                buffer.putInt(CAPACITY_OFFSET, slots);
+                buffer.putInt(RECORD_BYTES_OFFSET, RECORD_BYTES);
+                buffer.putInt(CLOCK_OFFSET, 0);
+                // magic last: a file without it is treated as unformatted
+                INT.setRelease(buffer, MAGIC_OFFSET, MAGIC);
+            } else {
+                slots = readCapacity(channel, file);
+                buffer = map(channel, FileChannel.MapMode.READ_WRITE, slots);
+            }
+
+            return new PersistentResultCache(channel, lock, buffer, slots, true);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new UncheckedIOException("Could not open result cache: " + file, e);
+        } catch (RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    // Opens an existing cache file without write access. Lookups do not update the clock.
+    public static PersistentResultCache openReadOnly(Path file) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            int slots = readCapacity(channel, file);
+            MappedByteBuffer buffer = map(channel, FileChannel.MapMode.READ_ONLY, slots);
+            return new PersistentResultCache(channel, null, buffer, slots, false);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new UncheckedIOException("Could not open result cache: " + file, e);
+        } catch (RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    public OptionalDouble get(String expression) {
+        String key = Calculator.normalize(expression);
+        long hash = keyHash(key);
+        long check = checkHash(key);
+
+        int start = (int) mix(hash) & (capacity - 1);
+        for (int i = 0; i < PROBE_LIMIT; i++) {
+            int record = recordOffset((start + i) & (capacity - 1));
+
+            for (int attempt = 0; attempt < READ_ATTEMPTS; attempt++) {
+                int before = (int) INT.getAcquire(buffer, record + SEQUENCE_OFFSET);
+                if ((before & 1) != 0) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+
+                long storedHash = buffer.getLong(record + KEY_OFFSET);
+                long storedCheck = buffer.getLong(record + CHECK_OFFSET);
+                long valueBits = buffer.getLong(record + VALUE_OFFSET);
+
+                VarHandle.loadLoadFence();
+                int after = (int) INT.getVolatile(buffer, record + SEQUENCE_OFFSET);
+                if (before != after) {
+                    continue;
+                }
+
+                if (storedHash == 0) {
+                    // slots are never emptied, so the key is not further along
+                    return OptionalDouble.empty();
+                }
+                if (storedHash == hash && storedCheck == check) {
+                    // only store when the bit is clear, so hot keys do not keep dirtying their page
+                    if (writable && (int) INT.getOpaque(buffer, record + REFERENCED_OFFSET) == 0) {
+                        INT.setOpaque(buffer, record + REFERENCED_OFFSET, 1);
+                    }
+                    return OptionalDouble.of(Double.longBitsToDouble(valueBits));
+                }
+                break;
+            }
+        }
+
+        return OptionalDouble.empty();
+    }
+
+    public synchronized void put(String expression, double value) {
+        if (!writable) {
+            throw new IllegalStateException("Result cache was opened read-only");
+        }
+
+        String key = Calculator.normalize(expression);
+        long hash = keyHash(key);
+        long check = checkHash(key);
+
+        int start = (int) mix(hash) & (capacity - 1);
+        for (int i = 0; i < PROBE_LIMIT; i++) {
+            int record = recordOffset((start + i) & (capacity - 1));
+            long storedHash = buffer.getLong(record + KEY_OFFSET);
+
+            if (storedHash == 0
+                    || (storedHash == hash && buffer.getLong(record + CHECK_OFFSET) == check)) {
+                write(record, hash, check, value);
+                return;
+            }
+        }
+
+        write(recordOffset((start + chooseVictim(start)) & (capacity - 1)), hash, check, value);
+    }
+
+    // Clock sweep over the probe window: clear referenced bits until an unreferenced record turns up
+    private int chooseVictim(int start) {
+        int hand = buffer.getInt(CLOCK_OFFSET);
+
+        for (int step = 0; step < 2 * PROBE_LIMIT; step++) {
+            int i = (hand + step) % PROBE_LIMIT;
+            int record = recordOffset((start + i) & (capacity - 1));
+
+            if ((int) INT.getOpaque(buffer, record + REFERENCED_OFFSET) == 0) {
+                buffer.putInt(CLOCK_OFFSET, (i + 1) % PROBE_LIMIT);
+                return i;
+            }
+            INT.setOpaque(buffer, record + REFERENCED_OFFSET, 0);
+        }
+
+        // unreachable: the first pass cleared every bit
+        return hand;
+    }
+
+    private void write(int record, long hash, long check, double value) {
+        // odd while writing; "| 1" also recovers a record left odd by a writer that crashed mid-write
+        int writing = buffer.getInt(record + SEQUENCE_OFFSET) | 1;
+
+        INT.setOpaque(buffer, record + SEQUENCE_OFFSET, writing);
+        VarHandle.storeStoreFence();
+
+        buffer.putLong(record + KEY_OFFSET, hash);
+        buffer.putLong(record + CHECK_OFFSET, check);
+        buffer.putLong(record + VALUE_OFFSET, Double.doubleToRawLongBits(value));
+        INT.setOpaque(buffer, record + REFERENCED_OFFSET, 1);
+
+        INT.setRelease(buffer, record + SEQUENCE_OFFSET, writing + 1);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isWritable() {
+        return writable;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (writable) {
+                buffer.force();
+            }
+            if (lock != null) {
+                lock.release();
+            }
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close result cache", e);
+        }
+    }
+
+    private static int recordOffset(int slot) {
+        return HEADER_BYTES + slot * RECORD_BYTES;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, int slots) throws IOException {
+        long size = HEADER_BYTES + (long) slots * RECORD_BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Capacity too large for one mapping: " + slots);
+        }
+        MappedByteBuffer buffer = channel.map(mode, 0, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static int readCapacity(FileChannel channel, Path file) throws IOException {
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), HEADER_BYTES));
+        header.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (header.limit() < HEADER_BYTES
+                || header.getInt(MAGIC_OFFSET) != MAGIC
+                || header.getInt(VERSION_OFFSET) != VERSION
+                || header.getInt(RECORD_BYTES_OFFSET) != RECORD_BYTES) {
+            throw new IllegalArgumentException("Not a result cache file: " + file);
+        }
+
+        int slots = header.getInt(CAPACITY_OFFSET);
+        if (channel.size() < HEADER_BYTES + (long) slots * RECORD_BYTES) {
+            throw new IllegalArgumentException("Truncated result cache file: " + file);
+        }
+        return slots;
+    }
+
+    private static FileLock tryLock(FileChannel channel, Path file) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            throw new IllegalStateException("Result cache is already open for writing: " + file);
+        }
+        return lock;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // already failing, keep the original error
+        }
+    }
+
+    // 64-bit FNV-1a over the UTF-8 bytes; 0 is reserved for empty slots
+    static long keyHash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    // Independent second hash, used to tell apart keys whose first hash collides
+    static long checkHash(String key) {
+        long hash = key.length();
+        for (int i = 0; i < key.length(); i++) {
+            hash = hash * 0x9E3779B97F4A7C15L + key.charAt(i);
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+}
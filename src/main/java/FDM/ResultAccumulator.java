@@ -0,0 +1,12 @@
+package FDM;
+
+// Folds evaluation results without keeping them.
+// Aggregates gives every worker its own accumulator and merges them at the end,
+// so implementations need not be thread-safe.
+public interface ResultAccumulator<A extends ResultAccumulator<A>> {
+
+    void accept(double value);
+
+    // Adds everything `other` has seen into this accumulator
+    void merge(A other);
+}
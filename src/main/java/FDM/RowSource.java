@@ -0,0 +1,42 @@
+package FDM;
+
+// Input rows for Aggregates: row i supplies one value per variable slot of the expression.
+// read() may be called from several threads at once, each with its own target array.
+public interface RowSource {
+
+    long size();
+
+    // Number of values per row
+    int width();
+
+    void read(long row, double[] target);
+
+    // Column-major data: columns[slot][row]. All columns must be the same length.
+    static RowSource ofColumns(double[]... columns) {
+        int rows = columns.length == 0 ? 0 : columns[0].length;
+        for (double[] column : columns) {
+            if (column.length != rows) {
+                throw new IllegalArgumentException("Columns differ in length: " + column.length + " != " + rows);
+            }
+        }
+
+        return new RowSource() {
+            @Override
+            public long size() {
+                return rows;
+            }
+
+            @Override
+            public int width() {
+                return columns.length;
+            }
+
+            @Override
+            public void read(long row, double[] target) {
+                for (int slot = 0; slot < columns.length; slot++) {
+                    target[slot] = columns[slot][(int) row];
+                }
+            }
+        };
+    }
+}
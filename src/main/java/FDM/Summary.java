@@ -0,0 +1,75 @@
+package FDM;
+
+// Count, sum, min, max and mean of a stream of results.
+// The sum uses compensated (Kahan-Neumaier) summation, so adding millions of values
+// of very different sizes does not lose the small ones.
+// NaN results are included, so one NaN makes the sum, min and max NaN.
+// An infinite result makes the sum infinite (both infinities together make it NaN).
+public final class Summary implements ResultAccumulator<Summary> {
+
+    private long count;
+    private double sum;
+    private double compensation;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    @Override
+    public void accept(double value) {
+        count++;
+        add(value);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    @Override
+    public void merge(Summary other) {
+        count += other.count;
+        add(other.sum);
+        compensation += other.compensation;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    private void add(double value) {
+        double total = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) {
+            compensation += (sum - total) + value;
+        } else {
+            compensation += (value - total) + sum;
+        }
+        sum = total;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double sum() {
+        double total = sum + compensation;
+        // once sum is infinite the compensation turns into inf - inf = NaN; the plain sum is right then
+        if (Double.isNaN(total) && Double.isInfinite(sum)) {
+            return sum;
+        }
+        return total;
+    }
+
+    // NaN when nothing was accepted
+    public double mean() {
+        return count == 0 ? Double.NaN : sum() / count;
+    }
+
+    // NaN when nothing was accepted
+    public double min() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    // NaN when nothing was accepted
+    public double max() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + ", sum=" + sum() + ", mean=" + mean() + ", min=" + min() + ", max=" + max();
+    }
+}
@@ -0,0 +1,149 @@
+package FDM;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+@TestMethodOrder(OrderAnnotation.class)
+class AggregatesTest {
+
+    private static final double EPS = 0.00005;
+
+    private ExpressionCompiler compiler;
+
+    @BeforeEach
+    void setup() {
+        compiler = new ExpressionCompiler();
+    }
+
+    // x = 0, 1, 2, ..., n-1
+    private static RowSource counting(int n) {
+        double[] x = new double[n];
+        Arrays.setAll(x, i -> i);
+        return RowSource.ofColumns(x);
+    }
+
+    @Test @Order(1)
+    void summarizes_results() {
+        Summary summary = Aggregates.summarize(compiler.compile("2*x+1", "x"), counting(1_000_000));
+
+        assertEquals(1_000_000, summary.count());
+        // sum of 2i+1 for i < n is n^2
+        assertEquals(1e12, summary.sum(), EPS);
+        assertEquals(1_000_000.0, summary.mean(), EPS);
+        assertEquals(1.0, summary.min(), EPS);
+        assertEquals(1_999_999.0, summary.max(), EPS);
+    }
+
+    @Test @Order(2)
+    void parallel_and_sequential_agree() {
+        CompiledExpression expression = compiler.compile("x > 500 ? x*0.9 : x^(1/2)", "x");
+        RowSource rows = counting(100_000);
+
+        Summary parallel = Aggregates.reduce(expression, rows, Summary::new, true);
+        Summary sequential = Aggregates.reduce(expression, rows, Summary::new, false);
+
+        assertEquals(sequential.count(), parallel.count());
+        assertEquals(sequential.sum(), parallel.sum(), 1e-6);
+        assertEquals(sequential.min(), parallel.min(), 0.0);
+        assertEquals(sequential.max(), parallel.max(), 0.0);
+    }
+
+    @Test @Order(3)
+    void compensated_sum_keeps_small_values() {
+        // plain summation: 1e16 + 1 rounds back to 1e16 every time
+        double[] x = new double[10_001];
+        Arrays.fill(x, 1.0);
+        x[0] = 1e16;
+
+        Summary summary = Aggregates.summarize(compiler.compile("x", "x"), RowSource.ofColumns(x));
+
+        assertEquals(1e16 + 10_000, summary.sum(), 0.0);
+    }
+
+    @Test @Order(4)
+    void infinite_results_make_the_sum_infinite() {
+        // 1/0 is +Infinity, which would turn the compensation into inf - inf = NaN
+        Summary summary = Aggregates.summarize(compiler.compile("1/x", "x"), counting(3));
+        assertEquals(Double.POSITIVE_INFINITY, summary.sum(), 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, summary.mean(), 0.0);
+        assertEquals(0.5, summary.min(), EPS);
+
+        Summary direct = new Summary();
+        direct.accept(1);
+        direct.accept(Double.POSITIVE_INFINITY);
+        assertEquals(Double.POSITIVE_INFINITY, direct.sum(), 0.0);
+
+        Summary negative = new Summary();
+        negative.accept(Double.NEGATIVE_INFINITY);
+        negative.accept(1);
+        assertEquals(Double.NEGATIVE_INFINITY, negative.sum(), 0.0);
+
+        Summary merged = new Summary();
+        merged.accept(2);
+        merged.merge(direct);
+        assertEquals(Double.POSITIVE_INFINITY, merged.sum(), 0.0);
+
+        // both infinities: there is no sum
+        direct.accept(Double.NEGATIVE_INFINITY);
+        assertTrue(Double.isNaN(direct.sum()));
+    }
+
+    @Test @Order(5)
+    void builds_histogram() {
+        Histogram histogram = Aggregates.histogram(compiler.compile("x - 10", "x"), counting(120), 0, 100, 10);
+
+        assertEquals(120, histogram.total());
+        assertEquals(10, histogram.below());
+        assertEquals(10, histogram.above());
+        for (int bin = 0; bin < 10; bin++) {
+            assertEquals(10, histogram.count(bin), "bin " + bin);
+        }
+        assertEquals(30.0, histogram.lowerEdge(3), EPS);
+    }
+
+    @Test @Order(6)
+    void histogram_counts_nan_separately() {
+        Histogram histogram = new Histogram(0, 1, 2);
+        histogram.accept(Double.NaN);
+        histogram.accept(0.25);
+        assertEquals(1, histogram.nan());
+        assertEquals(1, histogram.count(0));
+    }
+
+    @Test @Order(7)
+    void uses_several_variables() {
+        double[] price = {10, 20, 30};
+        double[] quantity = {1, 2, 3};
+        Summary summary = Aggregates.summarize(
+                compiler.compile("price*quantity", "price", "quantity"),
+                RowSource.ofColumns(price, quantity));
+
+        assertEquals(140.0, summary.sum(), EPS);
+    }
+
+    @Test @Order(8)
+    void empty_source_gives_empty_summary() {
+        Summary summary = Aggregates.summarize(compiler.compile("x", "x"), counting(0));
+        assertEquals(0, summary.count());
+        assertEquals(0.0, summary.sum(), 0.0);
+        assertTrue(Double.isNaN(summary.mean()));
+        assertTrue(Double.isNaN(summary.min()));
+    }
+
+    @Test @Order(9)
+    void rejects_rows_missing_variables() {
+        CompiledExpression expression = compiler.compile("x*y", "x", "y");
+        assertThrows(IllegalArgumentException.class, () -> Aggregates.summarize(expression, counting(10)));
+    }
+
+    @Test @Order(10)
+    void rejects_columns_of_different_length() {
+        assertThrows(IllegalArgumentException.class,
+                () -> RowSource.ofColumns(new double[3], new double[2]));
+    }
+}
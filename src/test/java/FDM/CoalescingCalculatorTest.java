@@ -0,0 +1,153 @@
+package FDM;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+@TestMethodOrder(OrderAnnotation.class)
+class CoalescingCalculatorTest {
+
+    private static final double EPS = 0.00005;
+
+    // Holds every evaluation until released, and counts how many actually ran
+    private static class GatedCalculator implements ICalculator {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public double evaluate(String number) {
+            calls.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new CompiledCalculator().evaluate(number);
+        }
+    }
+
+    private GatedCalculator gated;
+    private CoalescingCalculator calculator;
+
+    @BeforeEach
+    void setup() {
+        gated = new GatedCalculator();
+    }
+
+    @AfterEach
+    void teardown() {
+        gated.release.countDown();
+        calculator.close();
+    }
+
+    @Test @Order(1)
+    void evaluates_asynchronously() throws Exception {
+        calculator = new CoalescingCalculator(new CompiledCalculator(), 2, 10);
+        assertEquals(3.0, calculator.evaluateAsync("9^(1/2)").get(5, TimeUnit.SECONDS), EPS);
+    }
+
+    @Test @Order(2)
+    void merges_concurrent_identical_requests() throws Exception {
+        calculator = new CoalescingCalculator(gated, 4, 10);
+
+        List<CompletableFuture<Double>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(calculator.evaluateAsync("(2+3)*4"));
+        }
+        assertEquals(1, calculator.inFlightCount());
+
+        gated.release.countDown();
+        for (CompletableFuture<Double> future : futures) {
+            assertEquals(20.0, future.get(5, TimeUnit.SECONDS), EPS);
+        }
+        assertEquals(1, gated.calls.get());
+    }
+
+    @Test @Order(3)
+    void merges_requests_that_normalize_to_the_same_expression() throws Exception {
+        calculator = new CoalescingCalculator(gated, 4, 10);
+
+        CompletableFuture<Double> first = calculator.evaluateAsync("2--3");
+        CompletableFuture<Double> second = calculator.evaluateAsync(" 2 + 3 ");
+
+        gated.release.countDown();
+        assertEquals(5.0, first.get(5, TimeUnit.SECONDS), EPS);
+        assertEquals(5.0, second.get(5, TimeUnit.SECONDS), EPS);
+        assertEquals(1, gated.calls.get());
+    }
+
+    @Test @Order(4)
+    void evaluates_again_after_completion() throws Exception {
+        calculator = new CoalescingCalculator(gated, 1, 10);
+        gated.release.countDown();
+
+        // the entry is gone by the time the result arrives, so every round evaluates again
+        for (int round = 1; round <= 200; round++) {
+            calculator.evaluateAsync("1+1").get(5, TimeUnit.SECONDS);
+            assertEquals(0, calculator.inFlightCount());
+            assertEquals(round, gated.calls.get());
+        }
+
+        CompletableFuture<Double> failed = calculator.evaluateAsync("(1+2");
+        assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertEquals(0, calculator.inFlightCount());
+    }
+
+    @Test @Order(5)
+    void rejects_new_work_when_queue_is_full() throws Exception {
+        calculator = new CoalescingCalculator(gated, 1, 1);
+
+        CompletableFuture<Double> running = calculator.evaluateAsync("1+1");
+        CompletableFuture<Double> queued = calculator.evaluateAsync("2+2");
+        CompletableFuture<Double> rejected = calculator.evaluateAsync("3+3");
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, error.getCause());
+
+        // joining an expression already in flight still works while full
+        CompletableFuture<Double> joined = calculator.evaluateAsync("2+2");
+
+        gated.release.countDown();
+        assertEquals(2.0, running.get(5, TimeUnit.SECONDS), EPS);
+        assertEquals(4.0, queued.get(5, TimeUnit.SECONDS), EPS);
+        assertEquals(4.0, joined.get(5, TimeUnit.SECONDS), EPS);
+    }
+
+    @Test @Order(6)
+    void shares_failures_with_all_waiters() {
+        calculator = new CoalescingCalculator(gated, 1, 10);
+
+        CompletableFuture<Double> first = calculator.evaluateAsync("(1+2");
+        CompletableFuture<Double> second = calculator.evaluateAsync("(1+2");
+        gated.release.countDown();
+
+        for (CompletableFuture<Double> future : List.of(first, second)) {
+            ExecutionException error = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalArgumentException.class, error.getCause());
+        }
+        assertEquals(1, gated.calls.get());
+    }
+
+    @Test @Order(7)
+    void cancelling_one_waiter_leaves_others_running() throws Exception {
+        calculator = new CoalescingCalculator(gated, 1, 10);
+
+        CompletableFuture<Double> first = calculator.evaluateAsync("6*7");
+        CompletableFuture<Double> second = calculator.evaluateAsync("6*7");
+        first.cancel(true);
+
+        gated.release.countDown();
+        assertEquals(42.0, second.get(5, TimeUnit.SECONDS), EPS);
+    }
+}
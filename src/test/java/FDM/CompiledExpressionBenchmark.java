@@ -0,0 +1,137 @@
+package FDM;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Rough comparison of CompiledExpression against an object-per-node tree.
+// Not a unit test: run main() by hand (e.g. from the IDE) on a quiet machine.
+public class CompiledExpressionBenchmark {
+
+    private static final String EXPRESSION = "((1+2)*(3+4)-5/2)*(6-7*8)+9^2-(2+3)^3/4";
+    private static final int COPIES = 200_000;
+    private static final int ROUNDS = 2_000_000;
+
+    public static void main(String[] args) {
+        CompiledExpression compiled = new ExpressionCompiler().compile(EXPRESSION);
+        Node tree = TreeBuilder.build(compiled);
+
+        System.out.println("Expression: " + EXPRESSION);
+        System.out.println("Compiled value: " + compiled.evaluate() + ", tree value: " + tree.evaluate());
+
+        long compiledBytes = measureHeap(() -> {
+            List<Object> keep = new ArrayList<>(COPIES);
+            for (int i = 0; i < COPIES; i++) {
+                keep.add(new ExpressionCompiler().compile(EXPRESSION));
+            }
+            return keep;
+        });
+        long treeBytes = measureHeap(() -> {
+            List<Object> keep = new ArrayList<>(COPIES);
+            for (int i = 0; i < COPIES; i++) {
+                keep.add(TreeBuilder.build(compiled));
+            }
+            return keep;
+        });
+
+        int nodes = compiled.instructionCount();
+        System.out.printf("Heap per node: compiled %.1f bytes, tree %.1f bytes%n",
+                compiledBytes / (double) COPIES / nodes, treeBytes / (double) COPIES / nodes);
+
+        double[] stack = new double[compiled.maxStackDepth()];
+        for (int warmup = 0; warmup < 3; warmup++) {
+            timeCompiled(compiled, stack);
+            timeTree(tree);
+        }
+        System.out.printf("Evaluation: compiled %.1f ns, tree %.1f ns%n",
+                timeCompiled(compiled, stack), timeTree(tree));
+    }
+
+    private static double timeCompiled(CompiledExpression compiled, double[] stack) {
+        double sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += compiled.evaluate(stack);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) System.out.println();
+        return elapsed / (double) ROUNDS;
+    }
+
+    private static double timeTree(Node tree) {
+        double sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += tree.evaluate();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) System.out.println();
+        return elapsed / (double) ROUNDS;
+    }
+
+    private static long measureHeap(java.util.function.Supplier<Object> allocation) {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        Object kept = allocation.get();
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        if (kept.hashCode() == 42) System.out.println();
+        return after - before;
+    }
+
+    // Baseline: one object per node with child pointers
+    private static final class Node {
+        final byte opcode;
+        final double value;
+        final Node left;
+        final Node middle;
+        final Node right;
+
+        Node(byte opcode, double value, Node left, Node middle, Node right) {
+            this.opcode = opcode;
+            this.value = value;
+            this.left = left;
+            this.middle = middle;
+            this.right = right;
+        }
+
+        double evaluate() {
+            switch (opcode) {
+                case Opcodes.CONST: return value;
+                case Opcodes.NEG: return -left.evaluate();
+                case Opcodes.ADD: return left.evaluate() + right.evaluate();
+                case Opcodes.SUB: return left.evaluate() - right.evaluate();
+                case Opcodes.MUL: return left.evaluate() * right.evaluate();
+                case Opcodes.DIV: return left.evaluate() / right.evaluate();
+                case Opcodes.POW: return Calculator.pow(left.evaluate(), right.evaluate());
+                case Opcodes.POW_FRAC:
+                    return CompiledExpression.powFraction(left.evaluate(), middle.evaluate(), right.evaluate());
+                default: throw new IllegalStateException("Unknown opcode: " + opcode);
+            }
+        }
+    }
+
+    // Rebuilds a pointer tree from the postfix arrays, so both forms describe the same expression
+    private static final class TreeBuilder {
+        static Node build(CompiledExpression compiled) {
+            byte[] ops = compiled.opcodes();
+            Node[] stack = new Node[compiled.maxStackDepth()];
+            int sp = -1;
+            for (int pc = 0; pc < ops.length; pc++) {
+                byte op = ops[pc];
+                if (op == Opcodes.CONST) {
+                    stack[++sp] = new Node(op, compiled.constants()[compiled.operands()[pc]], null, null, null);
+                } else if (op == Opcodes.NEG) {
+                    stack[sp] = new Node(op, 0, stack[sp], null, null);
+                } else if (op == Opcodes.POW_FRAC) {
+                    sp -= 2;
+                    stack[sp] = new Node(op, 0, stack[sp], stack[sp + 1], stack[sp + 2]);
+                } else {
+                    sp--;
+                    stack[sp] = new Node(op, 0, stack[sp], null, stack[sp + 1]);
+                }
+            }
+            return stack[0];
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package FDM;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+@TestMethodOrder(OrderAnnotation.class)
+class CompiledExpressionTest {
+
+    private ExpressionCompiler compiler;
+
+    private static final double EPS = 0.00005;
+
+    @BeforeEach
+    void setup() {
+        compiler = new ExpressionCompiler();
+    }
+
+    private void assert_eval(String expression, double expected) {
+        assertEquals(expected, compiler.compile(expression).evaluate(), EPS, "Expression: " + expression);
+    }
+
+    // -------------------------
+    // Same answers as Calculator
+    // -------------------------
+
+    @Test @Order(1)
+    void matches_calculator_on_basic_arithmetic() {
+        Calculator calculator = new Calculator();
+        String[] expressions = {
+                "5", "   7   ", "3.5 + 0.5", "10-3+2", "10+3-2", "20/5*2", "20*5/2",
+                "2+3*4-6/2", "100/5/2+1", "4*-5", "1--2", "2++4", "2+-4", "2-+4",
+                "+-5", "-+5", "3*+2", "(2+3)*4", "-(3+4)", "((1+2)+((3+4)*2))",
+                "-(1+(-2+3))*2", "1+2*3-4/2+5*2"
+        };
+        for (String expression : expressions) {
+            assert_eval(expression, calculator.evaluate(expression));
+        }
+    }
+
+    @Test @Order(2)
+    void evaluates_integer_exponents() {
+        assert_eval("2^3", 8.0);
+        assert_eval("2*3^2", 18.0);
+        assert_eval("2^-3", 0.125);
+        assert_eval("(2+1)^-2", 1.0 / 9.0);
+        assert_eval("(-2)^3", -8.0);
+        assert_eval("9^2/3", 27.0);
+        assert_eval("2^(6/3)", 4.0);
+    }
+
+    @Test @Order(3)
+    void evaluates_fractional_exponents() {
+        assert_eval("9^(1/2)", 3.0);
+        assert_eval("8^(1/3)", 2.0);
+        assert_eval("3^(2/3)", 2.0800838230519);
+        assert_eval("(27)^(2/3)", 9.0);
+        assert_eval("  9  ^ (  1 / 2 ) ", 3.0);
+    }
+
+    @Test @Order(4)
+    void exponent_is_right_associative() {
+        assert_eval("2^3^2", 512.0);
+    }
+
+    @Test @Order(5)
+    void leading_sign_on_literal_binds_tighter_than_power() {
+        // Calculator treats "-2" at the start of a group as the base
+        assert_eval("-2^2", 4.0);
+        assert_eval("1-2^2", -3.0);
+        assert_eval("3*-2^2", -12.0);
+    }
+
+    @Test @Order(6)
+    void reads_scientific_literals_like_calculator() {
+        Calculator calculator = new Calculator();
+        for (String expression : new String[] {"1e3", "2.5e-3", "1E+2", "1e3+1", "2*1e2"}) {
+            assert_eval(expression, calculator.evaluate(expression));
+        }
+        // a name right after a number is still an error, not an exponent
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("2e", "e"));
+    }
+
+    // -------------------------
+    // Deliberate differences from Calculator (see ExpressionCompiler)
+    // -------------------------
+
+    @Test @Order(7)
+    void exponent_group_uses_normal_precedence() {
+        Calculator calculator = new Calculator();
+
+        // (8/4)/2, Calculator reads 8/(4/2)
+        assert_eval("2^(8/4/2)", 2.0);
+        assertEquals(16.0, calculator.evaluate("2^(8/4/2)"), EPS);
+
+        // (1/2)*2, Calculator reads 1/(2*2)
+        assert_eval("4^(1/2*2)", 4.0);
+        assertEquals(1.4142, calculator.evaluate("4^(1/2*2)"), EPS);
+
+        // (1/2)+0 is not a division, so it is a non-integer power
+        CompiledExpression compiled = compiler.compile("2^(1/2+0)");
+        assertThrows(IllegalArgumentException.class, compiled::evaluate);
+        assertEquals(1.4142, calculator.evaluate("2^(1/2+0)"), EPS);
+
+        // a division whose operands are groups agrees
+        assert_eval("2^((1+1)/2)", calculator.evaluate("2^((1+1)/2)"));
+    }
+
+    // -------------------------
+    // Compact representation
+    // -------------------------
+
+    @Test @Order(8)
+    void shares_repeated_constants_in_pool() {
+        CompiledExpression compiled = compiler.compile("2+2*2-2");
+        assertEquals(7, compiled.instructionCount());
+        assertEquals(1, compiled.constantCount());
+    }
+
+    @Test @Order(9)
+    void reports_footprint_of_arrays() {
+        CompiledExpression compiled = compiler.compile("1+2");
+        // 3 instructions * (1 opcode byte + 4 operand bytes) + 2 constants * 8 bytes
+        assertEquals(3 * 5 + 2 * 8, compiled.footprintBytes());
+    }
+
+    @Test @Order(10)
+    void reuses_caller_supplied_stack() {
+        CompiledExpression compiled = compiler.compile("(1+2)*(3+4)");
+        double[] stack = new double[compiled.maxStackDepth()];
+        assertEquals(21.0, compiled.evaluate(stack), EPS);
+        assertEquals(21.0, compiled.evaluate(stack), EPS);
+    }
+
+    @Test @Order(11)
+    void rejects_too_small_stack() {
+        CompiledExpression compiled = compiler.compile("(1+2)*(3+4)");
+        assertThrows(IllegalArgumentException.class, () -> compiled.evaluate(new double[1]));
+    }
+
+    // -------------------------
+    // Errors
+    // -------------------------
+
+    @Test @Order(12)
+    void rejects_mismatched_parentheses() {
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("(1+2"));
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("1+2)"));
+    }
+
+    @Test @Order(13)
+    void rejects_empty_parentheses() {
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("2*()"));
+    }
+
+    @Test @Order(14)
+    void rejects_non_integer_exponent() {
+        CompiledExpression compiled = compiler.compile("2^1.5");
+        assertThrows(IllegalArgumentException.class, compiled::evaluate);
+    }
+}
@@ -0,0 +1,221 @@
+package FDM;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+@TestMethodOrder(OrderAnnotation.class)
+class ConditionalExpressionTest {
+
+    private ExpressionCompiler compiler;
+
+    private static final double EPS = 0.00005;
+
+    // 2^1.5 throws, so it only passes if that branch is never run
+    private static final String FAILS_IF_EVALUATED = "2^1.5";
+
+    @BeforeEach
+    void setup() {
+        compiler = new ExpressionCompiler();
+    }
+
+    private void assert_eval(String expression, double expected) {
+        assertEquals(expected, compiler.compile(expression).evaluate(), EPS, "Expression: " + expression);
+    }
+
+    private void assert_eval_x(String expression, double x, double expected) {
+        CompiledExpression compiled = compiler.compile(expression, "x");
+        double actual = compiled.evaluate(new double[] {x}, new double[compiled.maxStackDepth()]);
+        assertEquals(expected, actual, EPS, "Expression: " + expression + " with x=" + x);
+    }
+
+    // -------------------------
+    // Comparisons
+    // -------------------------
+
+    @Test @Order(1)
+    void evaluates_comparisons_to_one_or_zero() {
+        assert_eval("1<2", 1.0);
+        assert_eval("2<2", 0.0);
+        assert_eval("2<=2", 1.0);
+        assert_eval("3>2", 1.0);
+        assert_eval("2>=3", 0.0);
+        assert_eval("2==2", 1.0);
+        assert_eval("2!=2", 0.0);
+    }
+
+    @Test @Order(2)
+    void comparisons_bind_looser_than_arithmetic() {
+        assert_eval("1+2*3 > 6", 1.0);
+        assert_eval("2^3 == 8", 1.0);
+        assert_eval("1 < 2 == 1", 1.0);
+    }
+
+    // -------------------------
+    // && and ||
+    // -------------------------
+
+    @Test @Order(3)
+    void evaluates_logical_operators() {
+        assert_eval("1<2 && 2<3", 1.0);
+        assert_eval("1<2 && 3<2", 0.0);
+        assert_eval("1>2 || 2<3", 1.0);
+        assert_eval("0 || 0", 0.0);
+        assert_eval("5 && 7", 1.0);
+        assert_eval("0 || 1 && 0", 0.0);
+    }
+
+    @Test @Order(4)
+    void and_skips_right_side_when_left_is_false() {
+        assert_eval("0 && " + FAILS_IF_EVALUATED, 0.0);
+    }
+
+    @Test @Order(5)
+    void or_skips_right_side_when_left_is_true() {
+        assert_eval("3 || " + FAILS_IF_EVALUATED, 1.0);
+    }
+
+    // -------------------------
+    // ?: and if()
+    // -------------------------
+
+    @Test @Order(6)
+    void evaluates_ternary_with_variable() {
+        assert_eval_x("x > 100 ? x*0.9 : x", 200, 180.0);
+        assert_eval_x("x > 100 ? x*0.9 : x", 50, 50.0);
+    }
+
+    @Test @Order(7)
+    void evaluates_if_function() {
+        assert_eval_x("if(x > 100, x*0.9, x)", 200, 180.0);
+        assert_eval_x("if(x > 100, x*0.9, x)", 50, 50.0);
+    }
+
+    @Test @Order(8)
+    void ternary_is_right_associative() {
+        String tiers = "x < 10 ? 1 : x < 100 ? 2 : 3";
+        assert_eval_x(tiers, 5, 1.0);
+        assert_eval_x(tiers, 50, 2.0);
+        assert_eval_x(tiers, 500, 3.0);
+    }
+
+    @Test @Order(9)
+    void untaken_branches_are_not_evaluated() {
+        assert_eval_x("x > 0 ? 1 : " + FAILS_IF_EVALUATED, 1, 1.0);
+        assert_eval_x("x > 0 ? " + FAILS_IF_EVALUATED + " : 2", -1, 2.0);
+        assert_eval_x("if(x, 8^(1/3), " + FAILS_IF_EVALUATED + ")", 1, 2.0);
+    }
+
+    @Test @Order(10)
+    void conditional_inside_arithmetic() {
+        assert_eval_x("10 + (x > 0 ? 1 : 2) * 3", 1, 13.0);
+        assert_eval_x("-(x > 0 ? 1 : 2)", -1, -2.0);
+        assert_eval_x("2^(x > 0 ? 3 : 1/2)", 1, 8.0);
+    }
+
+    @Test @Order(11)
+    void fractional_exponent_inside_branch() {
+        assert_eval_x("x > 0 ? 9^(1/2) : 27^(1/3)", 0, 3.0);
+    }
+
+    @Test @Order(12)
+    void signed_literal_starts_every_operand_group() {
+        // same as "(-2^2)": the sign belongs to the base
+        assert_eval("(-2^2)", 4.0);
+        assert_eval("1>0?-2^2:0", 4.0);
+        assert_eval("0?0:-2^2", 4.0);
+        assert_eval("if(1,-2^2,0)", 4.0);
+        assert_eval("0||-2^2==4", 1.0);
+        assert_eval("1&&-2^2==4", 1.0);
+        assert_eval("-2^2>=-2^2", 1.0);
+        assert_eval("3<-2^2", 1.0);
+        assert_eval("3!=-2^2", 1.0);
+        // after arithmetic operators the sign still applies to the whole power
+        assert_eval("3*-2^2", -12.0);
+        assert_eval("2^-2^2", 0.0625);
+    }
+
+    // -------------------------
+    // Every interpreter
+    // -------------------------
+
+    // Results of the three interpreter loops, or the exception class when evaluation fails
+    private static Object heapResult(CompiledExpression compiled, double x) {
+        try {
+            return compiled.evaluate(new double[] {x}, new double[compiled.maxStackDepth()]);
+        } catch (IllegalArgumentException e) {
+            return e.getClass();
+        }
+    }
+
+    private static Object offHeapResult(OffHeapExpressionStore store, int id, double x) {
+        try {
+            return store.evaluate(id, new double[] {x}, new double[store.maxStackDepth(id)]);
+        } catch (IllegalArgumentException e) {
+            return e.getClass();
+        }
+    }
+
+    private static Object gradientResult(CompiledExpression compiled, double x) {
+        try {
+            return compiled.gradient(new double[] {x}, "x").value();
+        } catch (IllegalArgumentException e) {
+            return e.getClass();
+        }
+    }
+
+    @Test @Order(13)
+    void all_interpreters_agree_on_control_flow() {
+        String[] corpus = {
+                "x > 100 ? x*0.9 : x",
+                "if(x > 100, x*0.9, x)",
+                "x < 10 ? 1 : x < 100 ? 2 : 3",
+                "x > 0 ? 1 : " + FAILS_IF_EVALUATED,
+                "x > 0 ? " + FAILS_IF_EVALUATED + " : 2",
+                "x && " + FAILS_IF_EVALUATED,
+                "x || " + FAILS_IF_EVALUATED,
+                "x > 0 && x < 100 || x == -1",
+                "(x > 0 || x < -5) && (x != 50 ? x : 0)",
+                "10 + (x > 0 ? 1 : 2) * 3",
+                "2^(x > 0 ? 3 : 1/2)",
+                "x > 0 ? 9^(1/2) : 27^(1/3)",
+                "if(x, if(x > 60, 1, 2), x ? 3 : 4) + (x && 5)",
+        };
+        double[] xs = {-1, 0, 1, 50, 200};
+
+        OffHeapExpressionStore store = new OffHeapExpressionStore();
+        for (String expression : corpus) {
+            CompiledExpression compiled = compiler.compile(expression, "x");
+            int id = store.add(compiled);
+            for (double x : xs) {
+                Object expected = heapResult(compiled, x);
+                String where = expression + " with x=" + x;
+                assertEquals(expected, offHeapResult(store, id, x), "off-heap: " + where);
+                assertEquals(expected, gradientResult(compiled, x), "gradient: " + where);
+            }
+        }
+    }
+
+    // -------------------------
+    // Errors
+    // -------------------------
+
+    @Test @Order(14)
+    void rejects_unknown_variable() {
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("y+1", "x"));
+    }
+
+    @Test @Order(15)
+    void rejects_incomplete_conditionals() {
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("1 ? 2", "x"));
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("if(1, 2)", "x"));
+    }
+
+    @Test @Order(16)
+    void rejects_missing_variable_values() {
+        CompiledExpression compiled = compiler.compile("x+1", "x");
+        assertThrows(IllegalArgumentException.class, compiled::evaluate);
+    }
+}
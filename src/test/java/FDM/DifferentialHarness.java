@@ -0,0 +1,191 @@
+package FDM;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Runs two ICalculator engines over the same corpus and reports
+//  - every expression where the results differ by more than eps; the difference is absolute,
+//    like the assertEquals(expected, actual, EPS) checks in the tests, unless relative mode is asked for
+//    (then eps is scaled by the expected value once it is above 1)
+//  - throughput and per-expression latency of each engine
+// An expression counts as matching when both engines throw, or both give NaN,
+// or both give the same infinity.
+//
+// main() runs a large seeded corpus over the full grammar:
+//   java FDM.DifferentialHarness [count] [seed] [signs=true|false] [relative=true|false]
+class DifferentialHarness {
+
+    private final ICalculator legacy;
+    private final ICalculator candidate;
+    private final double eps;
+    private final boolean relative;
+
+    DifferentialHarness(ICalculator legacy, ICalculator candidate, double eps) {
+        this(legacy, candidate, eps, false);
+    }
+
+    DifferentialHarness(ICalculator legacy, ICalculator candidate, double eps, boolean relative) {
+        this.legacy = legacy;
+        this.candidate = candidate;
+        this.eps = eps;
+        this.relative = relative;
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+        boolean signs = args.length <= 2 || Boolean.parseBoolean(args[2]);
+        boolean relative = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+        List<String> corpus = new RandomExpressionGenerator(seed, 4, signs).generate(count);
+        Report report = new DifferentialHarness(new Calculator(), new CompiledCalculator(), 0.00005, relative)
+                .run(corpus);
+
+        System.out.println(report.summary());
+        for (Mismatch mismatch : report.mismatches) {
+            System.out.println("  " + mismatch);
+        }
+    }
+
+    Report run(List<String> corpus) {
+        // one untimed pass each so the JIT has seen both engines
+        runEngine("warmup", legacy, corpus);
+        runEngine("warmup", candidate, corpus);
+
+        EngineRun legacyRun = runEngine("legacy", legacy, corpus);
+        EngineRun candidateRun = runEngine("candidate", candidate, corpus);
+
+        List<Mismatch> mismatches = new ArrayList<>();
+        for (int i = 0; i < corpus.size(); i++) {
+            if (!agree(legacyRun.results[i], candidateRun.results[i])) {
+                mismatches.add(new Mismatch(corpus.get(i), legacyRun.results[i], candidateRun.results[i]));
+            }
+        }
+
+        return new Report(corpus.size(), tolerance(), mismatches, legacyRun.stats, candidateRun.stats);
+    }
+
+    private EngineRun runEngine(String name, ICalculator engine, List<String> corpus) {
+        Object[] results = new Object[corpus.size()];
+        long[] latencies = new long[corpus.size()];
+
+        long started = System.nanoTime();
+        for (int i = 0; i < corpus.size(); i++) {
+            long before = System.nanoTime();
+            try {
+                results[i] = engine.evaluate(corpus.get(i));
+            } catch (RuntimeException | StackOverflowError e) {
+                results[i] = e;
+            }
+            latencies[i] = System.nanoTime() - before;
+        }
+        long elapsed = System.nanoTime() - started;
+
+        return new EngineRun(results, new EngineStats(name, elapsed, latencies));
+    }
+
+    private boolean agree(Object expected, Object actual) {
+        if (expected instanceof Throwable || actual instanceof Throwable) {
+            return expected instanceof Throwable && actual instanceof Throwable;
+        }
+
+        double a = (Double) expected;
+        double b = (Double) actual;
+
+        if (Double.isNaN(a) || Double.isNaN(b)) {
+            return Double.isNaN(a) && Double.isNaN(b);
+        }
+        if (Double.isInfinite(a) || Double.isInfinite(b)) {
+            return a == b;
+        }
+        double allowed = relative ? eps * Math.max(1.0, Math.abs(a)) : eps;
+        return Math.abs(a - b) <= allowed;
+    }
+
+    String tolerance() {
+        return (relative ? "relative" : "absolute") + " eps " + eps;
+    }
+
+    private static class EngineRun {
+        final Object[] results;
+        final EngineStats stats;
+
+        EngineRun(Object[] results, EngineStats stats) {
+            this.results = results;
+            this.stats = stats;
+        }
+    }
+
+    static class EngineStats {
+        final String name;
+        final long totalNanos;
+        private final long[] sortedLatencies;
+
+        EngineStats(String name, long totalNanos, long[] latencies) {
+            this.name = name;
+            this.totalNanos = totalNanos;
+            this.sortedLatencies = latencies.clone();
+            Arrays.sort(this.sortedLatencies);
+        }
+
+        double throughputPerSecond() {
+            return sortedLatencies.length / (totalNanos / 1e9);
+        }
+
+        // p in [0, 100]
+        long latencyPercentileNanos(double p) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p / 100.0 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-9s %,12.0f expr/s   p50 %,8d ns   p99 %,8d ns   max %,10d ns",
+                    name, throughputPerSecond(),
+                    latencyPercentileNanos(50), latencyPercentileNanos(99), latencyPercentileNanos(100));
+        }
+    }
+
+    static class Mismatch {
+        final String expression;
+        final Object legacyResult;
+        final Object candidateResult;
+
+        Mismatch(String expression, Object legacyResult, Object candidateResult) {
+            this.expression = expression;
+            this.legacyResult = legacyResult;
+            this.candidateResult = candidateResult;
+        }
+
+        @Override
+        public String toString() {
+            return "\"" + expression + "\": legacy=" + legacyResult + ", candidate=" + candidateResult;
+        }
+    }
+
+    static class Report {
+        final int total;
+        final String tolerance;
+        final List<Mismatch> mismatches;
+        final EngineStats legacy;
+        final EngineStats candidate;
+
+        Report(int total, String tolerance, List<Mismatch> mismatches, EngineStats legacy, EngineStats candidate) {
+            this.total = total;
+            this.tolerance = tolerance;
+            this.mismatches = mismatches;
+            this.legacy = legacy;
+            this.candidate = candidate;
+        }
+
+        String summary() {
+            return total + " expressions, " + mismatches.size() + " mismatches (" + tolerance + ")\n"
+                    + legacy + "\n"
+                    + candidate;
+        }
+    }
+}
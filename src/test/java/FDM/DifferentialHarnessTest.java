@@ -0,0 +1,99 @@
+package FDM;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+@TestMethodOrder(OrderAnnotation.class)
+class DifferentialHarnessTest {
+
+    // Same tolerance as CalculatorEvaluateTest
+    private static final double EPS = 0.00005;
+
+    private DifferentialHarness harness;
+
+    @BeforeEach
+    void setup() {
+        harness = new DifferentialHarness(new Calculator(), new CompiledCalculator(), EPS);
+    }
+
+    @Test @Order(1)
+    void generator_is_deterministic_for_a_seed() {
+        List<String> first = new RandomExpressionGenerator(7, 4, true).generate(200);
+        List<String> second = new RandomExpressionGenerator(7, 4, true).generate(200);
+        assertEquals(first, second);
+    }
+
+    @Test @Order(2)
+    void generator_covers_the_grammar() {
+        String all = String.join("\n", new RandomExpressionGenerator(7, 4, true).generate(2000));
+        assertTrue(all.contains("("));
+        assertTrue(all.contains("^("));
+        assertTrue(all.contains("/"));
+        assertTrue(all.contains("--") || all.contains("+-") || all.contains("-+"));
+        assertTrue(all.contains("^-"));
+        assertTrue(all.lines().anyMatch(RandomExpressionGenerator::isCompoundExponentGroup));
+    }
+
+    @Test @Order(3)
+    void compiled_engine_matches_calculator_on_random_corpus() {
+        List<String> corpus = new RandomExpressionGenerator(42, 4, false).generate(3000);
+
+        DifferentialHarness.Report report = harness.run(corpus);
+
+        assertEquals(3000, report.total);
+        // compound exponent groups like 2^(8/4/2) are read differently on purpose; nothing else may differ
+        for (DifferentialHarness.Mismatch mismatch : report.mismatches) {
+            assertTrue(RandomExpressionGenerator.isCompoundExponentGroup(mismatch.expression),
+                    report.summary() + "\n" + mismatch);
+        }
+        assertTrue(report.legacy.throughputPerSecond() > 0);
+        assertTrue(report.candidate.latencyPercentileNanos(99) >= report.candidate.latencyPercentileNanos(50));
+    }
+
+    @Test @Order(4)
+    void reports_known_calculator_sign_bug_as_mismatch() {
+        // Calculator splits at '*' because the last '+' is unary: (6+5)*(2/+4) = 5.5
+        DifferentialHarness.Report report = harness.run(List.of("6+5*2/++4", "1+2"));
+
+        assertEquals(1, report.mismatches.size());
+        assertEquals("6+5*2/++4", report.mismatches.get(0).expression);
+        assertEquals(8.5, (Double) report.mismatches.get(0).candidateResult, EPS);
+    }
+
+    @Test @Order(5)
+    void treats_errors_from_both_engines_as_agreement() {
+        DifferentialHarness.Report report = harness.run(List.of("2^1.5", "1/0"));
+        assertTrue(report.mismatches.isEmpty(), report.mismatches.toString());
+    }
+
+    @Test @Order(6)
+    void compares_with_absolute_eps_unless_relative_is_asked_for() {
+        // 1000 vs 1000.01: 0.01 apart, within eps only once eps is scaled by 1000
+        ICalculator legacy = number -> 1000.0;
+        ICalculator candidate = number -> 1000.01;
+
+        DifferentialHarness.Report absolute = new DifferentialHarness(legacy, candidate, 0.00005).run(List.of("x"));
+        assertEquals(1, absolute.mismatches.size());
+        assertTrue(absolute.summary().contains("absolute eps"), absolute.summary());
+
+        DifferentialHarness.Report relative = new DifferentialHarness(legacy, candidate, 0.00005, true).run(List.of("x"));
+        assertTrue(relative.mismatches.isEmpty());
+        assertTrue(relative.summary().contains("relative eps"), relative.summary());
+    }
+
+    @Test @Order(7)
+    void reports_compound_exponent_groups_as_mismatches() {
+        DifferentialHarness.Report report = harness.run(List.of("2^(8/4/2)", "4^(1/2*2)", "2^(1/2+0)", "9^(1/2)"));
+
+        assertEquals(3, report.mismatches.size(), report.mismatches.toString());
+        for (DifferentialHarness.Mismatch mismatch : report.mismatches) {
+            assertTrue(RandomExpressionGenerator.isCompoundExponentGroup(mismatch.expression));
+        }
+        assertFalse(RandomExpressionGenerator.isCompoundExponentGroup("9^(1/2)+2^(3)"));
+    }
+}
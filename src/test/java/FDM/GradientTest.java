@@ -0,0 +1,160 @@
+package FDM;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+@TestMethodOrder(OrderAnnotation.class)
+class GradientTest {
+
+    private ExpressionCompiler compiler;
+
+    private static final double EPS = 0.00005;
+
+    @BeforeEach
+    void setup() {
+        compiler = new ExpressionCompiler();
+    }
+
+    private Gradient gradient(String expression, double x, double y) {
+        return compiler.compile(expression, "x", "y").gradient(new double[] {x, y}, "x", "y");
+    }
+
+    private void assert_gradient(String expression, double x, double y, double value, double dx, double dy) {
+        Gradient g = gradient(expression, x, y);
+        assertEquals(value, g.value(), EPS, "value of " + expression);
+        assertEquals(dx, g.partial("x"), EPS, "d/dx of " + expression);
+        assertEquals(dy, g.partial("y"), EPS, "d/dy of " + expression);
+    }
+
+    // -------------------------
+    // Basic operators
+    // -------------------------
+
+    @Test @Order(1)
+    void differentiates_addition_and_subtraction() {
+        assert_gradient("x+y", 2, 3, 5, 1, 1);
+        assert_gradient("x-y", 2, 3, -1, 1, -1);
+        assert_gradient("x-3", 2, 3, -1, 1, 0);
+    }
+
+    @Test @Order(2)
+    void differentiates_multiplication_and_division() {
+        assert_gradient("x*y", 2, 3, 6, 3, 2);
+        assert_gradient("x/y", 2, 4, 0.5, 0.25, -0.125);
+    }
+
+    @Test @Order(3)
+    void differentiates_unary_sign() {
+        assert_gradient("-x", 2, 3, -2, -1, 0);
+        assert_gradient("-(x*y)", 2, 3, -6, -3, -2);
+        assert_gradient("3*--x", 2, 3, 6, 3, 0);
+    }
+
+    // -------------------------
+    // Powers
+    // -------------------------
+
+    @Test @Order(4)
+    void differentiates_integer_powers() {
+        assert_gradient("x^3", 2, 0, 8, 12, 0);
+        assert_gradient("x^-2", 2, 0, 0.25, -0.25, 0);
+        assert_gradient("x^0", 2, 0, 1, 0, 0);
+        assert_gradient("(x*y)^2", 2, 3, 36, 36, 24);
+    }
+
+    @Test @Order(5)
+    void differentiates_variable_exponent() {
+        // d/dy 2^y = 2^y ln 2
+        assert_gradient("2^y", 0, 3, 8, 0, 8 * Math.log(2));
+        // 0^y is 0 for y > 0: d/dy is 0, not 0 * ln 0 = NaN
+        assert_gradient("x^y", 0, 2, 0, 0, 0);
+        assert_gradient("x^(y/2)", 0, 4, 0, 0, 0);
+        assert_gradient("x^(2/y)", 0, 1, 0, 0, 0);
+    }
+
+    @Test @Order(6)
+    void differentiates_fractional_powers() {
+        // d/dx x^(1/2) = 1 / (2 sqrt x)
+        assert_gradient("x^(1/2)", 4, 0, 2, 0.25, 0);
+        // d/dx x^(2/3) = (2/3) x^(-1/3)
+        assert_gradient("x^(2/3)", 8, 0, 4, 2.0 / 3.0 / 2.0, 0);
+        assert_gradient("x^(-1/2)", 4, 0, 0.5, -1.0 / 16.0, 0);
+        // p >= q: finite slope at 0
+        assert_gradient("x^(3/2)", 0, 0, 0, 0, 0);
+        assert_gradient("x^(4/2)", 0, 0, 0, 0, 0);
+        assert_gradient("x^(2/2)", 0, 0, 0, 1, 0);
+        // odd root of a negative base
+        assert_gradient("x^(2/3)", -8, 0, 4, -1.0 / 3.0, 0);
+    }
+
+    @Test @Order(7)
+    void differentiates_variable_fractional_exponent() {
+        // same rule as b^e: d/dy b^(p/q) = b^(p/q) ln(b) d(p/q)
+        // x^(1/y) at x = 8, y = 3: d/dy (1/y) = -1/9
+        assert_gradient("x^(1/y)", 8, 3, 2, 1.0 / 12.0, -2 * Math.log(8) / 9);
+        // x^(y/2) at x = 4, y = 3: d/dy (y/2) = 1/2
+        assert_gradient("x^(y/2)", 4, 3, 8, 3, 8 * Math.log(4) / 2);
+    }
+
+    // -------------------------
+    // Conditionals
+    // -------------------------
+
+    @Test @Order(8)
+    void follows_the_chosen_branch() {
+        assert_gradient("x > 100 ? x*0.9 : x", 200, 0, 180, 0.9, 0);
+        assert_gradient("x > 100 ? x*0.9 : x", 50, 0, 50, 1, 0);
+        assert_gradient("if(x < y, y^2, x)", 1, 3, 9, 0, 6);
+    }
+
+    @Test @Order(9)
+    void comparisons_have_zero_derivative() {
+        assert_gradient("(x > y) + x*y", 3, 2, 7, 2, 3);
+        assert_gradient("x < y && y < 10", 1, 2, 1, 0, 0);
+    }
+
+    // -------------------------
+    // Against finite differences
+    // -------------------------
+
+    @Test @Order(10)
+    void matches_central_differences() {
+        String expression = "((x+1)*(y-2)^2 - x/y)^2 + x^(1/2)*3";
+        CompiledExpression compiled = compiler.compile(expression, "x", "y");
+        double x = 2.5;
+        double y = 4.0;
+        double h = 1e-5;
+
+        Gradient g = compiled.gradient(new double[] {x, y}, "x", "y");
+
+        double dx = (compiled.evaluate(new double[] {x + h, y}, new double[compiled.maxStackDepth()])
+                - compiled.evaluate(new double[] {x - h, y}, new double[compiled.maxStackDepth()])) / (2 * h);
+        double dy = (compiled.evaluate(new double[] {x, y + h}, new double[compiled.maxStackDepth()])
+                - compiled.evaluate(new double[] {x, y - h}, new double[compiled.maxStackDepth()])) / (2 * h);
+
+        // x^(1/2) is rounded by the evaluator, so allow a little more slack on dx
+        assertEquals(dx, g.partial(0), 1e-2 * Math.abs(dx));
+        assertEquals(dy, g.partial(1), 1e-6 * Math.abs(dy));
+        assertEquals(compiled.evaluate(new double[] {x, y}, new double[compiled.maxStackDepth()]), g.value(), EPS);
+    }
+
+    // -------------------------
+    // API
+    // -------------------------
+
+    @Test @Order(11)
+    void returns_partials_in_requested_order() {
+        Gradient g = compiler.compile("x*y", "x", "y").gradient(new double[] {2, 3}, "y");
+        assertEquals(1, g.size());
+        assertEquals(2.0, g.partial(0), EPS);
+    }
+
+    @Test @Order(12)
+    void rejects_unknown_variable() {
+        CompiledExpression compiled = compiler.compile("x*y", "x", "y");
+        assertThrows(IllegalArgumentException.class, () -> compiled.gradient(new double[] {2, 3}, "z"));
+    }
+}
@@ -0,0 +1,84 @@
+package FDM;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+// Measures what keeping many compiled expressions costs the garbage collector:
+// the same expressions are held once as on-heap CompiledExpressions and once in an
+// OffHeapExpressionStore. For each we print the live heap, how long a full collection takes
+// (it traces everything that is resident), and the collections caused by a fixed amount of
+// short-lived garbage (young collections, which mostly do not look at the resident set).
+// Not a unit test: run main() by hand on a quiet machine, with a fixed heap so the
+// numbers are comparable, e.g.
+//   java -Xms2g -Xmx2g FDM.OffHeapExpressionStoreBenchmark [expressions]
+public class OffHeapExpressionStoreBenchmark {
+
+    private static final int CHURN_ROUNDS = 200;
+    private static final int CHURN_ARRAYS = 200_000;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        ExpressionCompiler compiler = new ExpressionCompiler();
+
+        System.out.println(count + " expressions");
+        report("baseline", null);
+
+        List<CompiledExpression> onHeap = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            onHeap.add(compiler.compile(i + "*2+(x-1)^(1/2)", "x"));
+        }
+        report("on heap", onHeap);
+        onHeap = null;
+
+        OffHeapExpressionStore store = new OffHeapExpressionStore();
+        for (int i = 0; i < count; i++) {
+            store.add(compiler.compile(i + "*2+(x-1)^(1/2)", "x"));
+        }
+        System.out.printf("off-heap store holds %,d MiB of direct memory%n", store.offHeapBytes() >> 20);
+        report("off heap", store);
+    }
+
+    private static void report(String name, Object resident) {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long fullStart = System.nanoTime();
+        System.gc();
+        long fullMillis = (System.nanoTime() - fullStart) / 1_000_000;
+        long liveBytes = runtime.totalMemory() - runtime.freeMemory();
+
+        long collectionsBefore = collections();
+        long millisBefore = collectionMillis();
+        long sink = 0;
+        for (int round = 0; round < CHURN_ROUNDS; round++) {
+            Object[] garbage = new Object[CHURN_ARRAYS];
+            for (int i = 0; i < garbage.length; i++) {
+                garbage[i] = new double[16];
+            }
+            sink += garbage.length;
+        }
+        long collections = collections() - collectionsBefore;
+        long millis = collectionMillis() - millisBefore;
+
+        System.out.printf("%-9s live heap %,6d MiB   full GC %,5d ms   churn: %,4d collections, %,6d ms in GC%n",
+                name, liveBytes >> 20, fullMillis, collections, millis);
+        if (sink == 42 || (resident != null && resident.hashCode() == 42)) System.out.println();
+    }
+
+    private static long collections() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long collectionMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+}
@@ -0,0 +1,154 @@
+package FDM;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+@TestMethodOrder(OrderAnnotation.class)
+class OffHeapExpressionStoreTest {
+
+    private static final double EPS = 0.00005;
+
+    private ExpressionCompiler compiler;
+    private OffHeapExpressionStore store;
+
+    @BeforeEach
+    void setup() {
+        compiler = new ExpressionCompiler();
+        store = new OffHeapExpressionStore();
+    }
+
+    @Test @Order(1)
+    void assigns_sequential_ids() {
+        assertEquals(0, store.add(compiler.compile("1+1")));
+        assertEquals(1, store.add(compiler.compile("2+2")));
+        assertEquals(2, store.size());
+    }
+
+    @Test @Order(2)
+    void evaluates_same_as_heap_form() {
+        List<String> corpus = new RandomExpressionGenerator(11, 4, true).generate(500);
+        for (String expression : corpus) {
+            CompiledExpression compiled = compiler.compile(expression);
+            int id = store.add(compiled);
+
+            double expected;
+            try {
+                expected = compiled.evaluate();
+            } catch (IllegalArgumentException e) {
+                assertThrows(IllegalArgumentException.class, () -> store.evaluate(id), expression);
+                continue;
+            }
+            assertEquals(expected, store.evaluate(id), EPS, "Expression: " + expression);
+        }
+    }
+
+    @Test @Order(3)
+    void evaluates_fractional_exponents() {
+        int id = store.add(compiler.compile("(27)^(2/3)+9^(1/2)"));
+        assertEquals(12.0, store.evaluate(id), EPS);
+    }
+
+    @Test @Order(4)
+    void spills_into_new_chunks() {
+        OffHeapExpressionStore small = new OffHeapExpressionStore(64);
+        for (int i = 0; i < 100; i++) {
+            small.add(compiler.compile(i + "*2+1"));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i * 2 + 1, small.evaluate(i), EPS);
+        }
+        assertTrue(small.offHeapBytes() >= 100 * 64);
+    }
+
+    @Test @Order(5)
+    void stores_expression_larger_than_a_chunk() {
+        OffHeapExpressionStore small = new OffHeapExpressionStore(64);
+        String expression = "1" + "+1".repeat(200);
+        int id = small.add(compiler.compile(expression));
+        assertEquals(201.0, small.evaluate(id), EPS);
+    }
+
+    @Test @Order(6)
+    void grows_index_past_one_index_chunk() {
+        CompiledExpression compiled = compiler.compile("3*4");
+        int last = -1;
+        for (int i = 0; i < 200_000; i++) {
+            last = store.add(compiled);
+        }
+        assertEquals(199_999, last);
+        assertEquals(12.0, store.evaluate(last), EPS);
+        assertEquals(12.0, store.evaluate(131_072), EPS);
+    }
+
+    @Test @Order(7)
+    void reuses_caller_supplied_stack() {
+        int id = store.add(compiler.compile("(1+2)*(3+4)"));
+        double[] stack = new double[store.maxStackDepth(id)];
+        assertEquals(21.0, store.evaluate(id, stack), EPS);
+        assertThrows(IllegalArgumentException.class, () -> store.evaluate(id, new double[1]));
+    }
+
+    @Test @Order(8)
+    void evaluates_variables_and_conditionals() {
+        int id = store.add(compiler.compile("x > 100 ? x*0.9 : 2^1.5", "x"));
+        double[] stack = new double[store.maxStackDepth(id)];
+        assertEquals(180.0, store.evaluate(id, new double[] {200}, stack), EPS);
+        assertThrows(IllegalArgumentException.class, () -> store.evaluate(id, new double[] {50}, stack));
+    }
+
+    @Test @Order(9)
+    void rejects_unknown_id() {
+        store.add(compiler.compile("1"));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.evaluate(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.evaluate(-1));
+    }
+
+    @Test @Order(10)
+    void readers_see_expressions_added_concurrently() throws Exception {
+        // small chunks, so the chunk table is replaced many times while readers run
+        OffHeapExpressionStore small = new OffHeapExpressionStore(64);
+        int count = 20_000;
+        CompiledExpression[] compiled = new CompiledExpression[count];
+        for (int i = 0; i < count; i++) {
+            compiled[i] = compiler.compile(i + "*2+1");
+        }
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    double[] stack = new double[8];
+                    int seen;
+                    do {
+                        seen = small.size();
+                        for (int id = Math.max(0, seen - 500); id < seen; id++) {
+                            assertEquals(id * 2 + 1, small.evaluate(id, stack), EPS, "id " + id);
+                        }
+                    } while (seen < count);
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        for (CompiledExpression expression : compiled) {
+            small.add(expression);
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertNull(failure.get(), () -> String.valueOf(failure.get()));
+        assertEquals(count, small.size());
+    }
+}
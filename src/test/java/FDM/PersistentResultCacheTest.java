@@ -0,0 +1,175 @@
+package FDM;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+@TestMethodOrder(OrderAnnotation.class)
+class PersistentResultCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+
+    @BeforeEach
+    void setup() {
+        file = dir.resolve("results.cache");
+    }
+
+    // Counts how often the wrapped calculator is actually asked
+    private static class CountingCalculator implements ICalculator {
+        int calls;
+
+        @Override
+        public double evaluate(String number) {
+            calls++;
+            return new CompiledCalculator().evaluate(number);
+        }
+    }
+
+    @Test @Order(1)
+    void returns_stored_value() {
+        try (PersistentResultCache cache = PersistentResultCache.open(file, 64)) {
+            assertTrue(cache.get("9^(1/2)").isEmpty());
+            cache.put("9^(1/2)", 3.0);
+            assertEquals(3.0, cache.get("9^(1/2)").getAsDouble());
+        }
+    }
+
+    @Test @Order(2)
+    void keys_on_normalized_expression() {
+        try (PersistentResultCache cache = PersistentResultCache.open(file, 64)) {
+            cache.put("2--3", 5.0);
+            assertEquals(5.0, cache.get(" 2 + 3 ").getAsDouble());
+        }
+    }
+
+    @Test @Order(3)
+    void survives_reopen() {
+        try (PersistentResultCache cache = PersistentResultCache.open(file, 64)) {
+            cache.put("3^(2/3)", 2.0801);
+        }
+        try (PersistentResultCache cache = PersistentResultCache.open(file, 1024)) {
+            assertEquals(64, cache.capacity());
+            assertEquals(2.0801, cache.get("3^(2/3)").getAsDouble());
+        }
+    }
+
+    @Test @Order(4)
+    void rounds_capacity_up_to_power_of_two() {
+        try (PersistentResultCache cache = PersistentResultCache.open(file, 100)) {
+            assertEquals(128, cache.capacity());
+        }
+    }
+
+    @Test @Order(5)
+    void read_only_view_sees_writer_values() {
+        try (PersistentResultCache writer = PersistentResultCache.open(file, 64)) {
+            writer.put("1+1", 2.0);
+            try (PersistentResultCache reader = PersistentResultCache.openReadOnly(file)) {
+                assertEquals(2.0, reader.get("1+1").getAsDouble());
+                writer.put("2+2", 4.0);
+                assertEquals(4.0, reader.get("2+2").getAsDouble());
+                assertThrows(IllegalStateException.class, () -> reader.put("3+3", 6.0));
+            }
+        }
+    }
+
+    @Test @Order(6)
+    void allows_only_one_writer() {
+        PersistentResultCache writer = PersistentResultCache.open(file, 64);
+        try {
+            assertThrows(IllegalStateException.class, () -> PersistentResultCache.open(file, 64));
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test @Order(7)
+    void rejects_foreign_file() throws Exception {
+        Files.writeString(file, "definitely not a cache file, just some text padding it out to 64 bytes..");
+        assertThrows(IllegalArgumentException.class, () -> PersistentResultCache.openReadOnly(file));
+    }
+
+    @Test @Order(8)
+    void evicts_when_full_and_keeps_recent_entries() {
+        try (PersistentResultCache cache = PersistentResultCache.open(file, 16)) {
+            for (int i = 0; i < 1000; i++) {
+                cache.put(i + "+0", i);
+            }
+            assertEquals(999.0, cache.get("999+0").getAsDouble());
+
+            int present = 0;
+            for (int i = 0; i < 1000; i++) {
+                if (cache.get(i + "+0").isPresent()) {
+                    present++;
+                }
+            }
+            assertTrue(present <= 16, "present: " + present);
+        }
+    }
+
+    @Test @Order(9)
+    void recovers_records_left_mid_write_by_a_crashed_writer() throws Exception {
+        try (PersistentResultCache cache = PersistentResultCache.open(file, 16)) {
+            cache.put("1+1", 1.0);
+        }
+
+        // odd sequence on every record: what a writer dying between its two sequence stores leaves behind
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer odd = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            for (int slot = 0; slot < 16; slot++) {
+                odd.clear();
+                odd.putInt(0, 7);
+                channel.write(odd, 64 + slot * 32 + 24);
+            }
+        }
+
+        try (PersistentResultCache cache = PersistentResultCache.open(file, 16)) {
+            assertTrue(cache.get("1+1").isEmpty());
+            cache.put("1+1", 2.0);
+            cache.put("2+2", 4.0);
+            assertEquals(2.0, cache.get("1+1").getAsDouble());
+            assertEquals(4.0, cache.get("2+2").getAsDouble());
+        }
+    }
+
+    @Test @Order(10)
+    void caching_calculator_answers_warm_restart_without_evaluating() {
+        CountingCalculator first = new CountingCalculator();
+        try (PersistentResultCache cache = PersistentResultCache.open(file, 64)) {
+            CachingCalculator calculator = new CachingCalculator(first, cache);
+            assertEquals(9.0, calculator.evaluate("(27)^(2/3)"), 0.00005);
+            assertEquals(9.0, calculator.evaluate("(27)^(2/3)"), 0.00005);
+        }
+        assertEquals(1, first.calls);
+
+        CountingCalculator second = new CountingCalculator();
+        try (PersistentResultCache cache = PersistentResultCache.open(file, 64)) {
+            CachingCalculator calculator = new CachingCalculator(second, cache);
+            assertEquals(9.0, calculator.evaluate("(27)^(2/3)"), 0.00005);
+        }
+        assertEquals(0, second.calls);
+    }
+
+    @Test @Order(11)
+    void does_not_cache_failures() {
+        CountingCalculator counting = new CountingCalculator();
+        try (PersistentResultCache cache = PersistentResultCache.open(file, 64)) {
+            CachingCalculator calculator = new CachingCalculator(counting, cache);
+            assertThrows(IllegalArgumentException.class, () -> calculator.evaluate("(1+2"));
+            assertTrue(cache.get("(1+2").isEmpty());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package FDM;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Seeded generator of random expressions over the Calculator grammar:
+// signs (including doubled ones like "--" and "+-"), nested parentheses,
+// integer exponents, fractional exponents written as ^(p/q), and compound exponent
+// groups such as ^(8/4/2), ^(1/2*2) or ^((1+3)/2) that mix '/' with other operators.
+// The same seed always produces the same expressions.
+//
+// Fractional powers only get positive literal bases, since nthRoot is not defined
+// for negative values.
+//
+// With signs turned off there is no '-' anywhere (no unary signs, no subtraction,
+// no negative exponents). That corpus avoids two known Calculator bugs:
+//  - a negative operand after '*' or '/' (e.g. "6+5*2/-4", or "1-2*(-3)" once the
+//    parentheses are replaced by "-3.0") is split at the wrong operator
+//  - a tiny intermediate result is written back as "2.5E-4" and the '-' is then
+//    mistaken for subtraction
+// Compound exponent groups are generated in both modes. There the engines differ on purpose
+// (Calculator splits the group at its first '/', see ExpressionCompiler), so a corpus
+// with them has mismatches that are not Calculator bugs; isCompoundExponentGroup() spots them.
+class RandomExpressionGenerator {
+
+    private static final String[] SIGN_PAIRS = {"+", "-", "--", "+-", "-+", "++"};
+
+    private final Random random;
+    private final int maxDepth;
+    private final boolean signs;
+
+    RandomExpressionGenerator(long seed, int maxDepth, boolean signs) {
+        this.random = new Random(seed);
+        this.maxDepth = maxDepth;
+        this.signs = signs;
+    }
+
+    List<String> generate(int count) {
+        List<String> expressions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            expressions.add(next());
+        }
+        return expressions;
+    }
+
+    String next() {
+        return expression(random.nextInt(maxDepth + 1));
+    }
+
+    private String expression(int depth) {
+        if (depth == 0) {
+            return literal(true);
+        }
+
+        switch (random.nextInt(7)) {
+            case 0:
+            case 1:
+                return binary(depth);
+            case 2:
+                return "(" + expression(depth - 1) + ")";
+            case 3:
+                return signs
+                        ? sign() + "(" + expression(depth - 1) + ")"
+                        : "(" + expression(depth - 1) + ")";
+            case 4:
+                return integerPower(depth);
+            case 5:
+                return compoundPower();
+            default:
+                return fractionalPower();
+        }
+    }
+
+    private String binary(int depth) {
+        String operators = signs ? "+-*/" : "+*/";
+        char operator = operators.charAt(random.nextInt(operators.length()));
+        return expression(depth - 1) + space() + operator + space() + operand(depth - 1);
+    }
+
+    // right hand operand: may carry its own sign, e.g. "4*-5" or "1--2"
+    private String operand(int depth) {
+        if (signs && random.nextInt(4) == 0) {
+            return sign() + literal(false);
+        }
+        return expression(depth);
+    }
+
+    private String integerPower(int depth) {
+        String base = random.nextBoolean()
+                ? literal(false)
+                : "(" + expression(depth - 1) + ")";
+
+        int exponent = signs ? random.nextInt(6) - 2 : random.nextInt(4);
+        String exponentText = random.nextBoolean()
+                ? Integer.toString(exponent)
+                : "(" + exponent + ")";
+
+        return base + "^" + exponentText;
+    }
+
+    private String fractionalPower() {
+        int base = 1 + random.nextInt(30);
+        int denominator = 2 + random.nextInt(3);
+        int numerator = 1 + random.nextInt(3);
+        String baseText = random.nextBoolean() ? Integer.toString(base) : "(" + base + ")";
+        return baseText + space() + "^" + space() + "(" + numerator + "/" + denominator + ")";
+    }
+
+    // positive base, exponent group of small whole numbers with at least one operator
+    private String compoundPower() {
+        int base = 1 + random.nextInt(9);
+        return base + "^(" + exponentTerm(1 + random.nextInt(2)) + ")";
+    }
+
+    private String exponentTerm(int depth) {
+        if (depth == 0) {
+            return Integer.toString(1 + random.nextInt(4));
+        }
+        String operators = signs ? "+-*//" : "+*//";
+        char operator = operators.charAt(random.nextInt(operators.length()));
+        String left = exponentTerm(depth - 1);
+        String right = exponentTerm(random.nextInt(depth));
+        if (random.nextInt(3) == 0) {
+            left = "(" + left + ")";
+        }
+        return left + operator + right;
+    }
+
+    // True when the expression has an exponent group holding '/' that is not a plain p/q,
+    // where the compiler and Calculator deliberately read the group differently
+    static boolean isCompoundExponentGroup(String expression) {
+        String compact = expression.replace(" ", "");
+        for (int at = compact.indexOf("^("); at != -1; at = compact.indexOf("^(", at + 1)) {
+            int depth = 0;
+            int end = at + 1;
+            do {
+                char c = compact.charAt(end);
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                }
+                end++;
+            } while (depth > 0 && end < compact.length());
+
+            String group = compact.substring(at + 2, end - 1);
+            if (group.indexOf('/') != -1 && !group.matches("[0-9]+/[0-9]+")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String literal(boolean allowSign) {
+        String digits = random.nextInt(4) == 0
+                ? (1 + random.nextInt(9)) + "." + (1 + random.nextInt(9))
+                : Integer.toString(1 + random.nextInt(9));
+
+        if (signs && allowSign && random.nextInt(5) == 0) {
+            return sign() + digits;
+        }
+        return digits;
+    }
+
+    private String sign() {
+        return SIGN_PAIRS[random.nextInt(SIGN_PAIRS.length)];
+    }
+
+    private String space() {
+        return random.nextInt(8) == 0 ? " " : "";
+    }
+}